@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2023 "Neo4j,"
+ * Neo4j Sweden AB [https://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.graph_schema.introspector;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.neo4j.graph_schema.introspector.GraphSchema.Property;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.schema.ConstraintType;
+
+/**
+ * The properties guaranteed to be present by existence and key constraints, by label and by relationship type. Those
+ * properties are mandatory, regardless of the nodes and relationships that have been looked at, which matters when
+ * sampling. Neo4j doesn't constrain the types of properties, so those are still derived from the data. Immutable.
+ */
+final class Constraints {
+
+	/**
+	 * No constraints at all.
+	 */
+	static final Constraints NONE = new Constraints(Map.of(), Map.of());
+
+	/**
+	 * {@return the existence and key constraints defined in the database}
+	 * @param transaction The transaction to read the schema in
+	 */
+	static Constraints of(Transaction transaction) {
+
+		var mandatoryByLabel = new HashMap<String, Set<String>>();
+		var mandatoryByType = new HashMap<String, Set<String>>();
+		for (var constraint : transaction.schema().getConstraints()) {
+			var constraintType = constraint.getConstraintType();
+			if (constraintType == ConstraintType.NODE_PROPERTY_EXISTENCE || constraintType == ConstraintType.NODE_KEY) {
+				constraint.getPropertyKeys().forEach(mandatoryByLabel.computeIfAbsent(constraint.getLabel().name(), ignored -> new HashSet<>())::add);
+			} else if (constraintType == ConstraintType.RELATIONSHIP_PROPERTY_EXISTENCE || constraintType == ConstraintType.RELATIONSHIP_KEY) {
+				constraint.getPropertyKeys().forEach(mandatoryByType.computeIfAbsent(constraint.getRelationshipType().name(), ignored -> new HashSet<>())::add);
+			}
+		}
+		return mandatoryByLabel.isEmpty() && mandatoryByType.isEmpty() ? NONE : new Constraints(mandatoryByLabel, mandatoryByType);
+	}
+
+	private final Map<String, Set<String>> mandatoryByLabel;
+	private final Map<String, Set<String>> mandatoryByType;
+
+	/**
+	 * Creates new constraints.
+	 *
+	 * @param mandatoryByLabel The keys of the properties that are mandatory on all nodes having a label
+	 * @param mandatoryByType  The keys of the properties that are mandatory on all relationships of a type
+	 */
+	Constraints(Map<String, Set<String>> mandatoryByLabel, Map<String, Set<String>> mandatoryByType) {
+		this.mandatoryByLabel = Map.copyOf(mandatoryByLabel);
+		this.mandatoryByType = Map.copyOf(mandatoryByType);
+	}
+
+	/**
+	 * {@return the given property, mandatory if any of the labels requires it}
+	 * @param labels   The labels of a node type
+	 * @param property A property of that node type
+	 */
+	Property applyToNode(Collection<String> labels, Property property) {
+		if (property.mandatory() || mandatoryByLabel.isEmpty()) {
+			return property;
+		}
+		for (var label : labels) {
+			if (mandatoryByLabel.getOrDefault(label, Set.of()).contains(property.token())) {
+				return new Property(property.token(), property.types(), true, property.statistics());
+			}
+		}
+		return property;
+	}
+
+	/**
+	 * {@return the given property, mandatory if the relationship type requires it}
+	 * @param type     A relationship type
+	 * @param property A property of that type
+	 */
+	Property applyToRelationship(String type, Property property) {
+		if (property.mandatory() || !mandatoryByType.getOrDefault(type, Set.of()).contains(property.token())) {
+			return property;
+		}
+		return new Property(property.token(), property.types(), true, property.statistics());
+	}
+}
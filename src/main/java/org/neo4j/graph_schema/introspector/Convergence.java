@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2023 "Neo4j,"
+ * Neo4j Sweden AB [https://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.graph_schema.introspector;
+
+/**
+ * Tracks the sample of one label or relationship type. A sample is complete once it reaches the sample size or once it
+ * has converged, that is, when the last {@code window} samples did not bring up anything new: no new label
+ * combination, no new property key and no new property type. Homogeneous labels and types therefore finish after a
+ * few samples, while heterogeneous ones get the full sample size. Not thread safe.
+ */
+final class Convergence {
+
+	private final long sampleSize;
+	private final long window;
+	private long samples;
+	private long samplesWithoutNews;
+
+	/**
+	 * Creates a new tracker.
+	 *
+	 * @param sampleSize The maximum number of samples, might be {@link Long#MAX_VALUE}
+	 * @param window     The number of samples in a row without anything new after which the sample is complete,
+	 *                   {@literal 0} to take the full sample size
+	 */
+	Convergence(long sampleSize, long window) {
+		this.sampleSize = sampleSize;
+		this.window = window;
+	}
+
+	/**
+	 * Adds a single sample.
+	 *
+	 * @param news {@literal true} if the sample brought up a new label combination, property key or property type
+	 * @return {@literal true} if the sample is complete afterwards
+	 */
+	boolean add(boolean news) {
+		++samples;
+		samplesWithoutNews = news ? 0 : samplesWithoutNews + 1;
+		return isComplete();
+	}
+
+	/**
+	 * {@return true if no further samples are needed}
+	 */
+	boolean isComplete() {
+		return samples >= sampleSize || window > 0 && samplesWithoutNews >= window;
+	}
+
+	/**
+	 * {@return the number of samples taken}
+	 */
+	long samples() {
+		return samples;
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2023 "Neo4j,"
+ * Neo4j Sweden AB [https://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.graph_schema.introspector;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * The point in time by which introspection has to be done. Once expired, the introspector stops looking at further
+ * nodes and relationships and returns the schema derived so far, together with the labels and relationship types that
+ * have not been fully explored. Thread safe, as long as the clock is.
+ */
+final class Deadline {
+
+	/**
+	 * A deadline that never expires.
+	 */
+	static final Deadline NONE = new Deadline(() -> 0, 0, Long.MAX_VALUE);
+
+	/**
+	 * {@return a deadline expiring after the given time budget from now on, or {@link #NONE} if there is no budget}
+	 * @param timeBudgetMs The time budget in milliseconds, {@literal 0} for an unlimited budget
+	 */
+	static Deadline of(long timeBudgetMs) {
+		return of(timeBudgetMs, System::nanoTime);
+	}
+
+	/**
+	 * {@return a deadline expiring after the given time budget from now on according to the given clock, or {@link #NONE} if there is no budget}
+	 * @param timeBudgetMs The time budget in milliseconds, {@literal 0} for an unlimited budget
+	 * @param clock        The clock in nanoseconds, like {@link System#nanoTime()}
+	 */
+	static Deadline of(long timeBudgetMs, LongSupplier clock) {
+		return timeBudgetMs == 0 ? NONE : new Deadline(clock, clock.getAsLong(), TimeUnit.MILLISECONDS.toNanos(timeBudgetMs));
+	}
+
+	private final LongSupplier clock;
+	private final long start;
+	private final long budget;
+
+	private Deadline(LongSupplier clock, long start, long budget) {
+		this.clock = clock;
+		this.start = start;
+		this.budget = budget;
+	}
+
+	/**
+	 * {@return true if the time budget has been used up}
+	 */
+	boolean isExpired() {
+		return this != NONE && clock.getAsLong() - start >= budget;
+	}
+}
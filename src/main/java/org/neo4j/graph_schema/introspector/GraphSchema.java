@@ -20,29 +20,42 @@ package org.neo4j.graph_schema.introspector;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.function.UnaryOperator;
-import java.util.regex.Pattern;
+import java.util.random.RandomGenerator;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import org.neo4j.cypherdsl.support.schema_name.SchemaNames;
 import org.neo4j.graph_schema.introspector.Introspect.Config;
+import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.Resource;
 import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.TransactionTerminatedException;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.kernel.impl.util.ValueUtils;
+import org.neo4j.values.storable.Value;
+import org.neo4j.values.storable.Values;
 
 import com.github.f4b6a3.tsid.TsidFactory;
 
@@ -51,8 +64,44 @@ import com.github.f4b6a3.tsid.TsidFactory;
  */
 final class GraphSchema {
 
-	static GraphSchema build(Transaction transaction, Config config) throws Exception {
-		return new Introspector(transaction, config).introspect();
+	static GraphSchema build(GraphDatabaseService databaseService, Transaction transaction, Config config) throws Exception {
+		return build(databaseService, transaction, config, config.labelFilter());
+	}
+
+	/**
+	 * Derives the schema from the nodes of the given labels only. Other labels in scope of the configuration are still
+	 * part of the node types, if the nodes scanned have them.
+	 *
+	 * @param databaseService The database to introspect
+	 * @param transaction     The calling transaction
+	 * @param config          The configuration of the introspection
+	 * @param labelsToScan    The labels whose nodes are scanned, a subset of those in scope of the configuration
+	 * @return The schema derived
+	 * @throws Exception Any exception that might occur
+	 */
+	static GraphSchema build(GraphDatabaseService databaseService, Transaction transaction, Config config, TokenFilter labelsToScan) throws Exception {
+		return build(databaseService, transaction, config, labelsToScan, Deadline.of(config.timeBudgetMs()));
+	}
+
+	/**
+	 * Derives the schema from the nodes of the given labels only, by the given deadline rather than the one of the
+	 * configuration.
+	 *
+	 * @param databaseService The database to introspect
+	 * @param transaction     The calling transaction
+	 * @param config          The configuration of the introspection
+	 * @param labelsToScan    The labels whose nodes are scanned, a subset of those in scope of the configuration
+	 * @param deadline        The deadline of the introspection
+	 * @return The schema derived
+	 * @throws Exception Any exception that might occur
+	 */
+	static GraphSchema build(GraphDatabaseService databaseService, Transaction transaction, Config config, TokenFilter labelsToScan, Deadline deadline) throws Exception {
+		var workers = Workers.of(databaseService, transaction, config.parallelism());
+		var introspector = switch (config.engine()) {
+			case CYPHER -> new Introspector(transaction, workers, config, labelsToScan, deadline);
+			case KERNEL -> new KernelIntrospector(databaseService, transaction, workers, config, labelsToScan, deadline);
+		};
+		return introspector.introspect();
 	}
 
 	/**
@@ -71,12 +120,22 @@ final class GraphSchema {
 	 * Map from generated ID to instance.
 	 */
 	private final Map<Ref, RelationshipObjectType> relationshipObjectTypes;
+	/**
+	 * The number of samples taken per label and relationship type, not part of the schema itself.
+	 */
+	private final Samples samples;
+	/**
+	 * The labels and relationship types that have not been fully explored within the time budget.
+	 */
+	private final Unexplored unexplored;
 
-	private GraphSchema(Map<String, Token> nodeLabels, Map<String, Token> relationshipTypes, Map<Ref, NodeObjectType> nodeObjectTypes, Map<Ref, RelationshipObjectType> relationshipObjectTypes) {
+	private GraphSchema(Map<String, Token> nodeLabels, Map<String, Token> relationshipTypes, Map<Ref, NodeObjectType> nodeObjectTypes, Map<Ref, RelationshipObjectType> relationshipObjectTypes, Samples samples, Unexplored unexplored) {
 		this.nodeLabels = nodeLabels;
 		this.relationshipTypes = relationshipTypes;
 		this.nodeObjectTypes = nodeObjectTypes;
 		this.relationshipObjectTypes = relationshipObjectTypes;
+		this.samples = samples;
+		this.unexplored = unexplored;
 	}
 
 	public Map<String, Token> nodeLabels() {
@@ -95,10 +154,198 @@ final class GraphSchema {
 		return relationshipObjectTypes;
 	}
 
+	public Samples samples() {
+		return samples;
+	}
+
+	public Unexplored unexplored() {
+		return unexplored;
+	}
+
+	/**
+	 * {@return true if all labels and relationship types have been explored within the time budget}
+	 */
+	public boolean complete() {
+		return unexplored.nodeLabels().isEmpty() && unexplored.relationshipTypes().isEmpty();
+	}
+
+	/**
+	 * Prunes this schema to the neighborhood of a label: The node object types reachable within the given number of
+	 * hops from the node object types having that label, in either direction of the relationship object types, and the
+	 * relationship object types between them. Labels and types no longer referenced are pruned as well, and so are
+	 * their samples. Unexplored labels and types are kept unless they are known to be outside the neighborhood.
+	 *
+	 * @param label The label in the center of the neighborhood
+	 * @param depth The number of hops from the center
+	 * @return The schema of the neighborhood
+	 */
+	GraphSchema around(String label, int depth) {
+
+		var reached = new HashSet<Ref>();
+		var frontier = new ArrayList<Ref>();
+		var center = nodeLabels.get(label);
+		if (center != null) {
+			var centerRef = new Ref(center.id());
+			for (var nodeObjectType : nodeObjectTypes.entrySet()) {
+				if (nodeObjectType.getValue().labels().contains(centerRef)) {
+					reached.add(nodeObjectType.getKey());
+					frontier.add(nodeObjectType.getKey());
+				}
+			}
+		}
+
+		var neighbors = new HashMap<Ref, List<Ref>>();
+		for (var relationshipObjectType : relationshipObjectTypes.values()) {
+			neighbors.computeIfAbsent(relationshipObjectType.from(), ignored -> new ArrayList<>()).add(relationshipObjectType.to());
+			neighbors.computeIfAbsent(relationshipObjectType.to(), ignored -> new ArrayList<>()).add(relationshipObjectType.from());
+		}
+		for (int hop = 0; hop < depth && !frontier.isEmpty(); ++hop) {
+			var next = new ArrayList<Ref>();
+			for (var nodeObjectType : frontier) {
+				for (var neighbor : neighbors.getOrDefault(nodeObjectType, List.of())) {
+					if (nodeObjectTypes.containsKey(neighbor) && reached.add(neighbor)) {
+						next.add(neighbor);
+					}
+				}
+			}
+			frontier = next;
+		}
+
+		var prunedNodeObjectTypes = new LinkedHashMap<Ref, NodeObjectType>();
+		var labelIds = new HashSet<String>();
+		nodeObjectTypes.forEach((id, nodeObjectType) -> {
+			if (reached.contains(id)) {
+				prunedNodeObjectTypes.put(id, nodeObjectType);
+				nodeObjectType.labels().forEach(ref -> labelIds.add(ref.value()));
+			}
+		});
+		var prunedRelationshipObjectTypes = new LinkedHashMap<Ref, RelationshipObjectType>();
+		var typeIds = new HashSet<String>();
+		relationshipObjectTypes.forEach((id, relationshipObjectType) -> {
+			if (reached.contains(relationshipObjectType.from()) && reached.contains(relationshipObjectType.to())) {
+				prunedRelationshipObjectTypes.put(id, relationshipObjectType);
+				typeIds.add(relationshipObjectType.type().value());
+			}
+		});
+		var prunedNodeLabels = new HashMap<String, Token>();
+		nodeLabels.forEach((value, token) -> {
+			if (labelIds.contains(token.id())) {
+				prunedNodeLabels.put(value, token);
+			}
+		});
+		var prunedRelationshipTypes = new HashMap<String, Token>();
+		relationshipTypes.forEach((value, token) -> {
+			if (typeIds.contains(token.id())) {
+				prunedRelationshipTypes.put(value, token);
+			}
+		});
+		// Tokens referenced only by pruned object types are known to be outside the neighborhood, tokens not referenced
+		// at all might still be part of it, as long as they haven't been explored
+		var referencedLabelIds = new HashSet<String>();
+		nodeObjectTypes.values().forEach(nodeObjectType -> nodeObjectType.labels().forEach(ref -> referencedLabelIds.add(ref.value())));
+		var referencedTypeIds = new HashSet<String>();
+		relationshipObjectTypes.values().forEach(relationshipObjectType -> referencedTypeIds.add(relationshipObjectType.type().value()));
+		Predicate<String> labelInNeighborhood = value -> prunedNodeLabels.containsKey(value)
+			|| !(nodeLabels.containsKey(value) && referencedLabelIds.contains(nodeLabels.get(value).id()));
+		Predicate<String> typeInNeighborhood = value -> prunedRelationshipTypes.containsKey(value)
+			|| !(relationshipTypes.containsKey(value) && referencedTypeIds.contains(relationshipTypes.get(value).id()));
+
+		var prunedSamples = new Samples(prune(samples.nodeLabels(), prunedNodeLabels.keySet()), prune(samples.relationshipTypes(), prunedRelationshipTypes.keySet()));
+		var prunedUnexplored = new Unexplored(unexplored.nodeLabels().stream().filter(labelInNeighborhood).toList(), unexplored.relationshipTypes().stream().filter(typeInNeighborhood).toList());
+		return new GraphSchema(prunedNodeLabels, prunedRelationshipTypes, prunedNodeObjectTypes, prunedRelationshipObjectTypes, prunedSamples, prunedUnexplored);
+	}
+
+	private static Map<String, Long> prune(Map<String, Long> samples, Set<String> retained) {
+		var pruned = new TreeMap<String, Long>();
+		samples.forEach((value, count) -> {
+			if (retained.contains(value)) {
+				pruned.put(value, count);
+			}
+		});
+		return pruned;
+	}
+
+	/**
+	 * The number of nodes looked at per label and of relationships looked at per relationship type while sampling. Both
+	 * maps are empty if all nodes and relationships have been looked at.
+	 *
+	 * @param nodeLabels        Number of samples by label
+	 * @param relationshipTypes Number of samples by relationship type
+	 */
+	record Samples(Map<String, Long> nodeLabels, Map<String, Long> relationshipTypes) {
+
+		Map<String, Object> asMap() {
+			return Map.of("nodeLabels", nodeLabels, "relationshipTypes", relationshipTypes);
+		}
+	}
+
+	/**
+	 * The labels and relationship types whose nodes and relationships have not all been looked at (or sampled) when the
+	 * {@link Deadline deadline} expired. The schema contains what has been found for them so far, which might be nothing.
+	 *
+	 * @param nodeLabels        The sorted unexplored labels
+	 * @param relationshipTypes The sorted unexplored relationship types
+	 */
+	record Unexplored(List<String> nodeLabels, List<String> relationshipTypes) {
+
+		Map<String, Object> asMap() {
+			return Map.of("nodeLabels", nodeLabels, "relationshipTypes", relationshipTypes);
+		}
+	}
+
 	record Type(String value, String itemType) {
 	}
 
-	record Property(String token, List<Type> types, boolean mandatory) {
+	/**
+	 * A property of a node or relationship object type.
+	 *
+	 * @param token      The property key
+	 * @param types      The types of the values
+	 * @param mandatory  Whether the property is present on all nodes or relationships of the object type
+	 * @param statistics The statistics of the values, {@literal null} unless {@link Config#statistics()} is set. The
+	 *                   statistics of a relationship property are collected per relationship type, so that all
+	 *                   relationship object types of that type share them, whatever their endpoints
+	 */
+	record Property(String token, List<Type> types, boolean mandatory, Statistics statistics) {
+
+		Property(String token, List<Type> types, boolean mandatory) {
+			this(token, types, mandatory, null);
+		}
+	}
+
+	/**
+	 * Statistics of the values of a property, derived from the nodes or relationships looked at.
+	 *
+	 * @param distinctValues The number of distinct values, exact up to {@value HyperLogLog#EXACT_THRESHOLD} and
+	 *                       estimated beyond, see {@link HyperLogLog}
+	 * @param uniqueness     The ratio of distinct values to the number of nodes or relationships having the property,
+	 *                       exactly {@literal 1} for unique values up to the threshold of exact counting, within the
+	 *                       error of the estimate beyond
+	 * @param numericRange   The range of integer and float values, {@literal null} if there are none
+	 * @param temporalRange  The range of temporal values, {@literal null} if there are none or if they are of different
+	 *                       temporal types
+	 * @param stringLength   The length of string values in code points, {@literal null} if there are none
+	 * @param arrayLength    The length of array values, {@literal null} if there are none
+	 */
+	record Statistics(long distinctValues, double uniqueness, Range numericRange, Range temporalRange, Lengths stringLength, Lengths arrayLength) {
+	}
+
+	/**
+	 * The smallest and the largest value of a property.
+	 *
+	 * @param min The smallest value, either a number or the ISO representation of a temporal value
+	 * @param max The largest value, either a number or the ISO representation of a temporal value
+	 */
+	record Range(Object min, Object max) {
+	}
+
+	/**
+	 * The lengths of the string or array values of a property.
+	 *
+	 * @param average The average length
+	 * @param max     The maximum length
+	 */
+	record Lengths(double average, int max) {
 	}
 
 	record NodeObjectType(String id, List<Ref> labels, List<Property> properties) {
@@ -142,7 +389,6 @@ final class GraphSchema {
 			}
 		};
 
-		private static final Pattern ENCLOSING_TICK_MARKS = Pattern.compile("^`(.+)`$");
 		private static final Map<String, String> TYPE_MAPPING = Map.of(
 			"Long", "integer",
 			"Double", "float"
@@ -150,37 +396,158 @@ final class GraphSchema {
 
 		private final Transaction transaction;
 
-		private final Config config;
+		final Workers workers;
+
+		final Config config;
+
+		/**
+		 * The number of samples taken by label, written to by the workers.
+		 */
+		final Map<String, Long> samplesByLabel = new ConcurrentHashMap<>();
+
+		/**
+		 * The number of samples taken by relationship type, written to by the workers.
+		 */
+		final Map<String, Long> samplesByType = new ConcurrentHashMap<>();
+
+		/**
+		 * The deadline of this introspection, usually starting right before the creation of the introspector.
+		 */
+		final Deadline deadline;
+
+		/**
+		 * Labels not fully explored before the deadline expired, written to by the workers.
+		 */
+		final Set<String> unexploredLabels = ConcurrentHashMap.newKeySet();
+
+		/**
+		 * Relationship types not fully explored before the deadline expired, written to by the workers.
+		 */
+		final Set<String> unexploredTypes = ConcurrentHashMap.newKeySet();
+
+		/**
+		 * The heap taken by intermediate results, accounted to the calling transaction until the introspection is done.
+		 */
+		final MemoryBudget memory;
 
-		private Introspector(Transaction transaction, Config config) {
+		/**
+		 * Node types by the labels as returned by Cypher, so that the labels of nodes and endpoints are sorted, quoted and
+		 * joined only once per label combination instead of once per row. Cypher returns the labels of a node in the order
+		 * of their token ids, so there is usually one entry per label combination. Written to by the workers.
+		 */
+		private final Map<List<String>, String> nodeTypesByLabels = new ConcurrentHashMap<>();
+
+		/**
+		 * The labels whose nodes are scanned, usually the labels in scope of the configuration.
+		 */
+		final TokenFilter labelsToScan;
+
+		Introspector(Transaction transaction, Workers workers, Config config) {
+			this(transaction, workers, config, config.labelFilter(), Deadline.of(config.timeBudgetMs()));
+		}
+
+		Introspector(Transaction transaction, Workers workers, Config config, TokenFilter labelsToScan, Deadline deadline) {
 			this.transaction = transaction;
+			this.workers = workers;
 			this.config = config;
+			this.labelsToScan = labelsToScan;
+			this.deadline = deadline;
+			this.memory = new MemoryBudget(((InternalTransaction) transaction).kernelTransaction().memoryTracker(), config.maxMemoryBytes());
 		}
 
-		GraphSchema introspect() throws Exception {
-			var nodeLabels = getNodeLabels();
-			var relationshipTypes = getRelationshipTypes();
+		/**
+		 * A checkpoint for cooperative cancellation. Throws if the calling transaction has been terminated, for example via
+		 * {@code dbms.killQuery}, {@code TERMINATE TRANSACTION} or a transaction timeout, so that a killed introspection
+		 * stops right away, including its workers, instead of running to completion.
+		 *
+		 * @throws TransactionTerminatedException If the calling transaction has been terminated
+		 */
+		final void checkTermination() {
+			var reason = ((InternalTransaction) transaction).terminationReason();
+			if (reason.isPresent()) {
+				throw new TransactionTerminatedException(reason.get());
+			}
+		}
 
-			var nodeObjectTypeIdGenerator = new CachingUnaryOperator<>(new NodeObjectIdGenerator(config.useConstantIds()));
-			var relationshipObjectIdGenerator = new RelationshipObjectIdGenerator(config.useConstantIds());
+		/**
+		 * A {@link #checkTermination() checkpoint} for loops over nodes, relationships and result rows, that can also
+		 * stop early with what they have found so far. Safe to be called by the workers.
+		 *
+		 * @return {@literal true} if the deadline expired and the caller should stop
+		 * @throws TransactionTerminatedException If the calling transaction has been terminated
+		 */
+		final boolean shouldStop() {
+			checkTermination();
+			return deadline.isExpired();
+		}
 
-			var nodeObjectTypes = getNodeObjectTypes(nodeObjectTypeIdGenerator, nodeLabels);
-			var relationshipObjectTypes = getRelationshipObjectTypes(nodeObjectTypeIdGenerator, relationshipObjectIdGenerator, relationshipTypes);
+		/**
+		 * Derives the schema in two phases, one for the nodes and one for the relationships, which share nothing but the
+		 * ids of the node object types. If {@link #canIntrospectPhasesConcurrently() possible}, the relationships are
+		 * introspected concurrently to the nodes, in a transaction of their own. Otherwise, one phase runs after the other
+		 * in the calling transaction.
+		 *
+		 * @return The schema
+		 * @throws Exception Any exception that might occur
+		 */
+		GraphSchema introspect() throws Exception {
+			try (memory) {
+				var nodeLabels = getNodeLabels();
+				var relationshipTypes = getRelationshipTypes(transaction);
+				var constraints = Constraints.of(transaction);
+
+				var constantIds = config.useConstantIds() ? new ConstantIds() : null;
+				var nodeObjectTypeIdGenerator = new CachingUnaryOperator<>(new NodeObjectIdGenerator(constantIds));
+				var relationshipObjectIdGenerator = new RelationshipObjectIdGenerator(constantIds);
+
+				Workers.Phase<Map<Ref, RelationshipObjectType>> relationshipPhase = tx -> getRelationshipObjectTypes(tx, nodeObjectTypeIdGenerator, relationshipObjectIdGenerator, relationshipTypes, constraints);
+				var forkedRelationshipPhase = canIntrospectPhasesConcurrently() ? workers.fork(relationshipPhase) : null;
+
+				Map<Ref, NodeObjectType> nodeObjectTypes;
+				try {
+					nodeObjectTypes = getNodeObjectTypes(nodeObjectTypeIdGenerator, nodeLabels, constraints);
+				} catch (Exception e) {
+					if (forkedRelationshipPhase != null) {
+						forkedRelationshipPhase.cancel();
+					}
+					throw e;
+				}
+				var relationshipObjectTypes = forkedRelationshipPhase == null ? relationshipPhase.apply(transaction) : forkedRelationshipPhase.join();
+				// Allocations of other threads are accounted to the transaction by the calling thread only
+				memory.reconcile();
 
-			return new GraphSchema(nodeLabels, relationshipTypes, nodeObjectTypes, relationshipObjectTypes);
+				return new GraphSchema(nodeLabels, relationshipTypes, nodeObjectTypes, relationshipObjectTypes, new Samples(new TreeMap<>(samplesByLabel), new TreeMap<>(samplesByType)),
+					new Unexplored(unexploredLabels.stream().sorted().toList(), unexploredTypes.stream().sorted().toList()));
+			}
 		}
 
 		private Map<String, Token> getNodeLabels() throws Exception {
 
-			return getToken(transaction.getAllLabelsInUse(), Label::name, config.quoteTokens(), config.useConstantIds() ? "nl:%s"::formatted : ignored -> ID_GENERATOR.get());
+			return getToken(transaction.getAllLabelsInUse(), Label::name, config.labelFilter(), config.quoteTokens(), config.useConstantIds() ? label -> "nl:" + label : ignored -> ID_GENERATOR.get());
 		}
 
-		private Map<String, Token> getRelationshipTypes() throws Exception {
+		/**
+		 * {@return new statistics of the properties of one object type, sketching their values if {@link Config#statistics()} is set}
+		 */
+		final PropertyStatistics newPropertyStatistics() {
+			return new PropertyStatistics(config.statistics() ? memory : null);
+		}
+
+		/**
+		 * {@return true if the relationships can be introspected in a transaction of their own, concurrently to the nodes}
+		 * That requires more than one worker and a calling transaction without any uncommitted changes, as those are not
+		 * seen by other transactions.
+		 */
+		boolean canIntrospectPhasesConcurrently() {
+			return workers.parallelism() > 1 && !workers.callingTransactionHasChanges();
+		}
+
+		private Map<String, Token> getRelationshipTypes(Transaction tx) throws Exception {
 
-			return getToken(transaction.getAllRelationshipTypesInUse(), RelationshipType::name, config.quoteTokens(), config.useConstantIds() ? "rt:%s"::formatted : ignored -> ID_GENERATOR.get());
+			return getToken(tx.getAllRelationshipTypesInUse(), RelationshipType::name, config.typeFilter(), config.quoteTokens(), config.useConstantIds() ? type -> "rt:" + type : ignored -> ID_GENERATOR.get());
 		}
 
-		private <T> Map<String, Token> getToken(Iterable<T> tokensInUse, Function<T, String> nameExtractor, boolean quoteTokens, UnaryOperator<String> idGenerator) throws Exception {
+		private <T> Map<String, Token> getToken(Iterable<T> tokensInUse, Function<T, String> nameExtractor, TokenFilter filter, boolean quoteTokens, UnaryOperator<String> idGenerator) throws Exception {
 
 			Function<Token, Token> valueMapper = Function.identity();
 			if (quoteTokens) {
@@ -188,10 +555,9 @@ final class GraphSchema {
 			}
 			try {
 				return StreamSupport.stream(tokensInUse.spliterator(), false)
-					.map(label -> {
-						var tokenValue = nameExtractor.apply(label);
-						return new Token(idGenerator.apply(tokenValue), tokenValue);
-					})
+					.map(nameExtractor)
+					.filter(filter)
+					.map(tokenValue -> new Token(idGenerator.apply(tokenValue), tokenValue))
 					.collect(Collectors.toMap(Token::value, valueMapper));
 			} finally {
 				if (tokensInUse instanceof Resource resource) {
@@ -200,115 +566,464 @@ final class GraphSchema {
 			}
 		}
 
-		private static String getRelationshipPropertiesQuery(Config config) {
+		/**
+		 * {@return the query retrieving all properties of all relationship types, including their types}
+		 * The rows are neither projected nor ordered, so that they are streamed right from the procedure into the
+		 * aggregation in {@link #getRelationshipTypeProperties(Transaction)}, which orders the much smaller aggregate instead.
+		 */
+		private static String getRelationshipPropertiesQuery() {
 			// language=cypher
-			var template = """
+			return """
 				CALL db.schema.relTypeProperties() YIELD relType, propertyName, propertyTypes, mandatory
-				WITH substring(relType, 2, size(relType)-3) AS relType, propertyName, propertyTypes, mandatory
-				CALL {
-					WITH relType, propertyName
-					MATCH (n)-[r]->(m) WHERE type(r) = relType AND (r[propertyName] IS NOT NULL OR propertyName IS NULL)
-					WITH n, r, m
-					// LIMIT
-					WITH DISTINCT labels(n) AS from, labels(m) AS to
-					RETURN from, to
-				}
-				RETURN DISTINCT from, to, relType, propertyName, propertyTypes, mandatory
-				ORDER BY relType ASC
 				""";
-			if (config.sampleOnly()) {
-				return template.replace("// LIMIT\n", "LIMIT " + DEFAULT_SAMPLE_SIZE + "\n");
-			}
-			return template;
 		}
 
 		/**
-		 * The main algorithm of retrieving node object types (or instances). It uses the existing procedure {@code db.schema.nodeTypeProperties}
-		 * for building a map from nodeType to property sets.
+		 * Creates a query walking all relationships of {@code relType} exactly once. The type is part of the pattern so that
+		 * the relationship type lookup index can be used, instead of checking the type of each and every relationship.
+		 * The query is rendered the same way on every call, the text being the key for Neo4j's query cache of each
+		 * database, so that the cached plans stay warm across calls without keeping any text around in here.
+		 *
+		 * @param relType The unquoted relationship type
+		 * @return A query with a typed and properly quoted pattern
+		 */
+		private static String getRelationshipScanQuery(String relType) {
+			// language=cypher
+			return """
+				MATCH (n)-[r:%s]->(m)
+				RETURN labels(n) AS from, labels(m) AS to, keys(r) AS keys
+				""".formatted(quote(relType, "relationship type"));
+		}
+
+		/**
+		 * {@return the quoted token}
+		 * @param token The unquoted token
+		 * @param kind  The kind of token for the error message
+		 */
+		private static String quote(String token, String kind) {
+			return SchemaNames.sanitize(token, true)
+				.orElseThrow(() -> new IllegalArgumentException("Cannot quote " + kind + " " + token));
+		}
+
+		/**
+		 * Converts a property value returned by Cypher, which returns arrays as lists, into a storable value.
+		 *
+		 * @param value A property value
+		 * @return The storable value
+		 */
+		private static Value toValue(Object value) {
+			return value instanceof List<?> list ? ValueUtils.asListValue(list).toStorableArray() : Values.of(value);
+		}
+
+		/**
+		 * Creates a query like {@link #getRelationshipScanQuery(String)}, returning the properties of the relationships
+		 * instead of their keys, as needed for {@link Config#statistics() statistics}.
+		 *
+		 * @param relType The unquoted relationship type
+		 * @return A query with a typed and properly quoted pattern
+		 */
+		private static String getRelationshipValuesQuery(String relType) {
+			// language=cypher
+			return """
+				MATCH (n)-[r:%s]->(m)
+				RETURN labels(n) AS from, labels(m) AS to, properties(r) AS properties
+				""".formatted(quote(relType, "relationship type"));
+		}
+
+		/**
+		 * {@return the number of relationships to be looked at per property or {@link Long#MAX_VALUE} if all of them must be looked at}
+		 */
+		static long getSampleSize(Config config) {
+			return config.sampleOnly() ? config.sampleSize() : Long.MAX_VALUE;
+		}
+
+		/**
+		 * {@return the number of nodes to be looked at per label or {@link Long#MAX_VALUE} if all of them must be looked at}
+		 * Nodes are only sampled on request, as properties missing on nodes after the sample would be reported as mandatory.
+		 */
+		static long getNodeSampleSize(Config config) {
+			return config.sampleOnly() && config.sampleNodes() ? config.sampleSize() : Long.MAX_VALUE;
+		}
+
+		/**
+		 * Creates a source of randomness for sampling one stratum, such as the relationships of one type having one
+		 * property. Without a {@link Config#seed() seed}, the random generator of the current thread is returned. Otherwise,
+		 * the generator is seeded from the seed and the stratum, so that a stratum is sampled the same way regardless of
+		 * the order in which the strata are sampled and of the worker sampling it.
+		 *
+		 * @param stratum Identifies the stratum, must have stable hash codes such as strings and numbers
+		 * @return A random generator to be used from the current thread only
+		 */
+		RandomGenerator newRandom(Object... stratum) {
+			return config.seed() == null ? ThreadLocalRandom.current() : new SplittableRandom(config.seed() + 31L * Arrays.hashCode(stratum));
+		}
+
+		/**
+		 * {@return the window for tracking the {@link Convergence convergence} of samples, {@literal 0} if the full sample size is taken}
+		 */
+		static long getConvergenceWindow(Config config) {
+			return config.sampleOnly() ? config.convergenceWindow() : 0;
+		}
+
+		/**
+		 * The main algorithm of retrieving node object types (or instances). It builds a map from nodeType to property sets
+		 * via {@link #getNodeTypeProperties()}.
 		 *
 		 * @param idGenerator    The id generator
 		 * @param labelIdToToken The map of existing token by id
+		 * @param constraints    The constraints making properties mandatory
 		 * @return A map with the node object instances
 		 * @throws Exception Any exception that might occur
 		 */
-		private Map<Ref, GraphSchema.NodeObjectType> getNodeObjectTypes(UnaryOperator<String> idGenerator, Map<String, Token> labelIdToToken) throws Exception {
+		private Map<Ref, GraphSchema.NodeObjectType> getNodeObjectTypes(UnaryOperator<String> idGenerator, Map<String, Token> labelIdToToken, Constraints constraints) throws Exception {
 
 			if (labelIdToToken.isEmpty()) {
 				return Map.of();
 			}
 
+			var nodeObjectTypes = new LinkedHashMap<Ref, NodeObjectType>();
+			for (var entry : getNodeTypeProperties().entrySet()) {
+				checkTermination();
+				var nodeLabels = entry.getValue().nodeLabels();
+
+				var id = new Ref(idGenerator.apply(entry.getKey()));
+				var nodeObject = nodeObjectTypes.computeIfAbsent(id, key -> new GraphSchema.NodeObjectType(key.value, nodeLabels
+					.stream().map(l -> new Ref(labelIdToToken.get(l).id)).toList()));
+				entry.getValue().properties().forEach(property -> nodeObject.properties().add(constraints.applyToNode(nodeLabels, property)));
+			}
+			return nodeObjectTypes;
+		}
+
+		/**
+		 * Retrieves the properties of all node types via the existing procedure {@code db.schema.nodeTypeProperties} or,
+		 * if {@link Config#sampleNodes() nodes are sampled}, via {@link #sampleNodeTypeProperties(long)}. The procedure always reads
+		 * all nodes and yields no values, so that all nodes of the labels in scope are read the same way as samples are,
+		 * if labels are {@link Config#labelFilter() filtered} or {@link Config#statistics() statistics} are required.
+		 *
+		 * @return A map from node type to the properties of that type, ordered by node type
+		 * @throws Exception Any exception that might occur
+		 */
+		Map<String, NodeTypeProperties> getNodeTypeProperties() throws Exception {
+
+			var sampleSize = getNodeSampleSize(config);
+			if (sampleSize != Long.MAX_VALUE || labelsToScan.isFiltering() || config.statistics()) {
+				return sampleNodeTypeProperties(sampleSize);
+			}
+			if (shouldStop()) {
+				getToken(transaction.getAllLabelsInUse(), Label::name, labelsToScan, false, UnaryOperator.identity()).keySet().forEach(unexploredLabels::add);
+				return Map.of();
+			}
+
+			// Not ordered by Cypher, so that no row needs to be materialized before aggregating them into a sorted map
 			// language=cypher
 			var query = """
 				CALL db.schema.nodeTypeProperties()
 				YIELD nodeType, nodeLabels, propertyName, propertyTypes, mandatory
-				RETURN *
-				ORDER BY nodeType ASC
 				""";
 
-			var nodeObjectTypes = new LinkedHashMap<Ref, NodeObjectType>();
+			var nodeTypeProperties = new TreeMap<String, NodeTypeProperties>();
 			transaction.execute(query).accept((Result.ResultVisitor<Exception>) resultRow -> {
-				@SuppressWarnings("unchecked")
-				var nodeLabels = ((List<String>) resultRow.get("nodeLabels")).stream().sorted().toList();
-
-				var id = new Ref(idGenerator.apply(resultRow.getString("nodeType")));
-				var nodeObject = nodeObjectTypes.computeIfAbsent(id, key -> new GraphSchema.NodeObjectType(key.value, nodeLabels
-					.stream().map(l -> new Ref(labelIdToToken.get(l).id)).toList()));
+				// Terminating the visitor early is not supported, so it can only be cancelled
+				checkTermination();
+				var properties = nodeTypeProperties.computeIfAbsent(resultRow.getString("nodeType"), nodeType -> {
+					@SuppressWarnings("unchecked")
+					var nodeLabels = ((List<String>) resultRow.get("nodeLabels")).stream().sorted().toList();
+					memory.allocate(MemoryBudget.ENTRY + MemoryBudget.sizeOf(nodeType) + MemoryBudget.sizeOf(nodeLabels));
+					return new NodeTypeProperties(nodeLabels, new ArrayList<>());
+				});
 				extractProperty(resultRow)
-					.ifPresent(nodeObject.properties()::add);
+					.ifPresent(property -> {
+						memory.allocate(MemoryBudget.PROPERTY_TYPE * property.types().size());
+						properties.properties().add(property);
+					});
 
 				return true;
 			});
-			return nodeObjectTypes;
+			return nodeTypeProperties;
 		}
 
 		/**
-		 * The main algorithm of retrieving node object types (or instances). It uses the existing procedure {@literal db.schema.relTypeProperties}
-		 * for building a map from types to property sets.
-		 * <p>
-		 * It does a full label scan.
+		 * Retrieves the properties of all node types from the first {@code sampleSize} nodes of each label, instead of
+		 * looking at every node like {@code db.schema.nodeTypeProperties} does. Nodes with multiple labels are only added
+		 * once, when they are first sampled through any of their labels. Properties are considered mandatory if they are
+		 * present on all sampled nodes, and are ordered by their property key token, the same way the procedure does.
+		 * Sampling a label stops early once it has {@link Convergence converged}. Only the {@link #labelsToScan labels to
+		 * scan} are walked, and nodes are typed by their labels in scope only. When looking at all nodes of those labels,
+		 * a node with multiple labels is added through the first of them, so that the nodes added need not be tracked.
+		 * Only the labels and properties of the nodes are returned, not the nodes themselves. Cypher returns arrays as
+		 * lists, hence the type of empty arrays cannot be told apart and they are reported as string arrays.
 		 *
+		 * @param sampleSize The number of nodes to be looked at per label, {@link Long#MAX_VALUE} for all of them
+		 * @return A map from node type to the properties of that type, ordered by node type
+		 * @throws Exception Any exception that might occur
+		 */
+		private Map<String, NodeTypeProperties> sampleNodeTypeProperties(long sampleSize) throws Exception {
+
+			// Property keys are returned in the order of their tokens
+			var propertyKeys = new ArrayList<String>();
+			try (var result = transaction.execute("CALL db.propertyKeys()")) {
+				result.forEachRemaining(row -> propertyKeys.add((String) row.get("propertyKey")));
+			}
+			var propertyKeyIndexes = new HashMap<String, Integer>();
+			for (int i = 0; i < propertyKeys.size(); ++i) {
+				propertyKeyIndexes.put(propertyKeys.get(i), i);
+			}
+
+			var labelsByNodeType = new HashMap<String, List<String>>();
+			var statisticsByNodeType = new HashMap<String, PropertyStatistics>();
+			var sampledNodes = new HashSet<String>();
+			var labelsInUse = transaction.getAllLabelsInUse();
+			try {
+				for (var label : labelsInUse) {
+					if (!labelsToScan.test(label.name())) {
+						continue;
+					}
+					if (shouldStop()) {
+						unexploredLabels.add(label.name());
+						continue;
+					}
+					var convergence = new Convergence(sampleSize, getConvergenceWindow(config));
+					try (var result = transaction.execute(getNodeSampleQuery(label.name()), Map.of("sampleSize", sampleSize))) {
+						while (!convergence.isComplete() && result.hasNext()) {
+							if (shouldStop()) {
+								unexploredLabels.add(label.name());
+								break;
+							}
+							var row = result.next();
+							if (sampleSize != Long.MAX_VALUE) {
+								var elementId = (String) row.get("id");
+								if (!sampledNodes.add(elementId)) {
+									convergence.add(false);
+									continue;
+								}
+								memory.allocate(MemoryBudget.ENTRY + MemoryBudget.sizeOf(elementId));
+							}
+							var nodeLabels = new ArrayList<String>();
+							@SuppressWarnings("unchecked")
+							var allLabels = (List<String>) row.get("labels");
+							for (var nodeLabel : allLabels) {
+								if (config.labelFilter().test(nodeLabel)) {
+									nodeLabels.add(nodeLabel);
+								}
+							}
+							if (sampleSize == Long.MAX_VALUE && !label.name().equals(nodeLabels.stream().filter(labelsToScan).min(Comparator.naturalOrder()).orElse(null))) {
+								continue;
+							}
+							var nodeType = getNodeType(nodeLabels);
+							var news = !labelsByNodeType.containsKey(nodeType);
+							if (news) {
+								labelsByNodeType.put(nodeType, nodeLabels.stream().sorted().toList());
+								memory.allocate(2 * MemoryBudget.ENTRY + MemoryBudget.sizeOf(nodeType) + MemoryBudget.sizeOf(nodeLabels));
+							}
+							var statistics = statisticsByNodeType.computeIfAbsent(nodeType, ignored -> newPropertyStatistics());
+							var numberOfPropertyTypes = statistics.numberOfPropertyTypes();
+							statistics.addEntity();
+							@SuppressWarnings("unchecked")
+							var properties = (Map<String, Object>) row.get("properties");
+							// Keys created after the property keys have been read sort last, the same way their tokens do
+							properties.forEach((key, value) -> statistics.addProperty(propertyKeyIndexes.computeIfAbsent(key, newKey -> {
+								propertyKeys.add(newKey);
+								return propertyKeys.size() - 1;
+							}), toValue(value)));
+							var newPropertyTypes = statistics.numberOfPropertyTypes() - numberOfPropertyTypes;
+							if (newPropertyTypes > 0) {
+								memory.allocate(MemoryBudget.PROPERTY_TYPE * newPropertyTypes);
+							}
+							convergence.add(news || newPropertyTypes > 0);
+						}
+					}
+					if (sampleSize != Long.MAX_VALUE) {
+						samplesByLabel.put(label.name(), convergence.samples());
+					}
+				}
+			} finally {
+				if (labelsInUse instanceof Resource resource) {
+					resource.close();
+				}
+			}
+
+			var nodeTypeProperties = new TreeMap<String, NodeTypeProperties>();
+			statisticsByNodeType.forEach((nodeType, statistics) ->
+				nodeTypeProperties.put(nodeType, new NodeTypeProperties(labelsByNodeType.get(nodeType), statistics.toProperties(propertyKeys::get))));
+			return nodeTypeProperties;
+		}
+
+		/**
+		 * Creates a query returning the element ids, labels and properties of the first nodes with the given label, the
+		 * number of nodes being passed as parameter {@code $sampleSize}.
+		 *
+		 * @param label The unquoted label
+		 * @return A query with a properly quoted label
+		 */
+		private static String getNodeSampleQuery(String label) {
+			// language=cypher
+			return """
+				MATCH (n:%s)
+				RETURN elementId(n) AS id, labels(n) AS labels, properties(n) AS properties LIMIT $sampleSize
+				""".formatted(quote(label, "label"));
+		}
+
+		/**
+		 * The main algorithm of retrieving relationship object types (or instances). It builds a map from types to property
+		 * sets via {@link #getRelationshipTypeProperties(Transaction)}. Endpoints without any label in scope are
+		 * {@link #UNLABELED skipped}, so that no relationship object type refers to a node object type that doesn't exist.
+		 *
+		 * @param tx                        The transaction to introspect the relationships in
 		 * @param nodeObjectTypeIdGenerator The id generator f or node objects
 		 * @param idGenerator               The id generator for relationships
 		 * @param relationshipIdToToken     The map of existing token by id
+		 * @param constraints               The constraints making properties mandatory
 		 * @return A map with the relationship object instances
 		 * @throws Exception Any exception that might occur
 		 */
 		private Map<Ref, RelationshipObjectType> getRelationshipObjectTypes(
+			Transaction tx,
 			UnaryOperator<String> nodeObjectTypeIdGenerator,
 			BinaryOperator<String> idGenerator,
-			Map<String, Token> relationshipIdToToken
+			Map<String, Token> relationshipIdToToken,
+			Constraints constraints
 		) throws Exception {
 
 			if (relationshipIdToToken.isEmpty()) {
 				return Map.of();
 			}
 
-			var query = getRelationshipPropertiesQuery(config);
-
 			var relationshipObjectTypes = new LinkedHashMap<Ref, RelationshipObjectType>();
+			for (var entry : getRelationshipTypeProperties(tx).entrySet()) {
+				checkTermination();
+				var relType = entry.getKey();
+				for (var relationshipTypeProperty : entry.getValue()) {
+					var property = relationshipTypeProperty.property().map(p -> constraints.applyToRelationship(relType, p));
+					for (var endpoints : relationshipTypeProperty.endpoints()) {
+						// There is no node object type to refer to
+						if (endpoints.from().equals(UNLABELED) || endpoints.to().equals(UNLABELED)) {
+							continue;
+						}
+						var from = nodeObjectTypeIdGenerator.apply(endpoints.from());
+						var to = nodeObjectTypeIdGenerator.apply(endpoints.to());
+
+						var id = new Ref(idGenerator.apply(relType, to));
+						var relationshipObject = relationshipObjectTypes.computeIfAbsent(id, key ->
+							new RelationshipObjectType(key.value, new Ref(relationshipIdToToken.get(relType).id()), new Ref(from), new Ref(to)));
+						property.ifPresent(relationshipObject.properties()::add);
+					}
+				}
+			}
+			return relationshipObjectTypes;
+		}
 
-			transaction.execute(query).accept((Result.ResultVisitor<Exception>) resultRow -> {
-				var relType = resultRow.getString("relType");
-				@SuppressWarnings("unchecked")
-				var from = nodeObjectTypeIdGenerator.apply(":" + ((List<String>) resultRow.get("from")).stream()
-					.sorted()
-					.map(v -> "`" + v + "`")
-					.collect(Collectors.joining(":")));
-				@SuppressWarnings("unchecked")
-				var to = nodeObjectTypeIdGenerator.apply(":" + ((List<String>) resultRow.get("to")).stream()
-					.sorted()
-					.map(v -> "`" + v + "`")
-					.collect(Collectors.joining(":")));
-
-				var id = new Ref(idGenerator.apply(relType, to));
-				var relationshipObject = relationshipObjectTypes.computeIfAbsent(id, key ->
-					new RelationshipObjectType(key.value, new Ref(relationshipIdToToken.get(relType).id()), new Ref(from), new Ref(to)));
-				extractProperty(resultRow)
-					.ifPresent(relationshipObject.properties()::add);
+		/**
+		 * Retrieves the properties of all relationship types via the existing procedure {@literal db.schema.relTypeProperties}
+		 * and the endpoints of the relationships having them. The relationships of each type are walked exactly once,
+		 * collecting the start and end labels for all properties of that type in the same pass. The types are walked by
+		 * the {@link Workers workers}, possibly in parallel. Only the types in scope are walked, though the procedure always
+		 * reads all relationships.
+		 *
+		 * @param tx The transaction to introspect the relationships in, not necessarily the calling transaction
+		 * @return A map from relationship type to its properties, ordered by type
+		 * @throws Exception Any exception that might occur
+		 */
+		Map<String, List<RelationshipTypeProperty>> getRelationshipTypeProperties(Transaction tx) throws Exception {
 
+			if (shouldStop()) {
+				getRelationshipTypes(tx).keySet().forEach(unexploredTypes::add);
+				return Map.of();
+			}
+
+			var propertiesByType = new TreeMap<String, List<Optional<Property>>>();
+			tx.execute(getRelationshipPropertiesQuery()).accept((Result.ResultVisitor<Exception>) resultRow -> {
+				checkTermination();
+				// Strips the colon and the tick marks of the quoted type
+				var relType = resultRow.getString("relType");
+				relType = relType.substring(2, relType.length() - 1);
+				if (config.typeFilter().test(relType)) {
+					propertiesByType.computeIfAbsent(relType, ignored -> new ArrayList<>()).add(extractProperty(resultRow));
+				}
 				return true;
 			});
-			return relationshipObjectTypes;
+
+			var sampleSize = getSampleSize(config);
+			var relTypes = List.copyOf(propertiesByType.keySet());
+			var results = workers.map(tx, relTypes, (workerTransaction, relType) -> {
+				var properties = propertiesByType.get(relType);
+				var convergence = new Convergence(Long.MAX_VALUE, getConvergenceWindow(config));
+				var statistics = config.statistics() ? newPropertyStatistics() : null;
+				var scan = scanRelationshipType(workerTransaction, relType, properties, config.samplingStrategy(), sampleSize, key -> newRandom(relType, key), convergence, statistics);
+				if (sampleSize != Long.MAX_VALUE) {
+					samplesByType.put(relType, convergence.samples());
+				}
+				var result = new ArrayList<RelationshipTypeProperty>(properties.size());
+				for (int i = 0; i < properties.size(); ++i) {
+					var key = i;
+					var property = statistics == null ? properties.get(i) : properties.get(i).map(p -> new Property(p.token(), p.types(), p.mandatory(), statistics.getStatistics(key)));
+					result.add(new RelationshipTypeProperty(property, scan.getEndpoints(property.map(Property::token).orElse(null))));
+				}
+				return result;
+			});
+
+			var relationshipTypeProperties = new LinkedHashMap<String, List<RelationshipTypeProperty>>();
+			for (int i = 0; i < relTypes.size(); ++i) {
+				relationshipTypeProperties.put(relTypes.get(i), results.get(i));
+			}
+			return relationshipTypeProperties;
+		}
+
+		/**
+		 * Walks the relationships of one type until the endpoints of all given properties have been sampled, until
+		 * the relationships walked have converged or until the deadline expired, in which case the type is marked as
+		 * unexplored.
+		 *
+		 * @param tx               The transaction to walk the relationships in
+		 * @param relType          The unquoted relationship type
+		 * @param properties       The properties of that type, an empty optional standing for a type without any properties
+		 * @param samplingStrategy The strategy for sampling the relationships having a property
+		 * @param sampleSize       The number of relationships to be looked at per property
+		 * @param randomByKey      Creates the source of randomness for sampling the relationships having a property
+		 * @param convergence      Tracks the relationships walked
+		 * @param statistics       Collects the values of the relationships walked, keyed by the index of their property, {@literal null} if values are not needed
+		 * @return The completed scan
+		 */
+		private RelationshipScan<String> scanRelationshipType(Transaction tx, String relType, List<Optional<Property>> properties, SamplingStrategy samplingStrategy, long sampleSize, Function<String, RandomGenerator> randomByKey, Convergence convergence, PropertyStatistics statistics) {
+
+			var tokens = properties.stream().map(p -> p.map(Property::token).orElse(null)).toList();
+			var scan = new RelationshipScan<>(tokens, samplingStrategy, sampleSize, randomByKey);
+			var keyIndexes = new HashMap<String, Integer>();
+			for (int i = 0; i < tokens.size(); ++i) {
+				keyIndexes.put(tokens.get(i), i);
+			}
+			try (var result = tx.execute(statistics == null ? getRelationshipScanQuery(relType) : getRelationshipValuesQuery(relType))) {
+				// Not using Result#accept here, as terminating the visitor early breaks the underlying cursors
+				while (result.hasNext() && !scan.isComplete() && !convergence.isComplete()) {
+					if (shouldStop()) {
+						unexploredTypes.add(relType);
+						break;
+					}
+					var row = result.next();
+					List<String> keys;
+					if (statistics == null) {
+						@SuppressWarnings("unchecked")
+						var rowKeys = (List<String>) row.get("keys");
+						keys = rowKeys;
+					} else {
+						@SuppressWarnings("unchecked")
+						var values = (Map<String, Object>) row.get("properties");
+						keys = List.copyOf(values.keySet());
+						statistics.addEntity();
+						values.forEach((key, value) -> {
+							var index = keyIndexes.get(key);
+							if (index != null) {
+								statistics.addProperty(index, toValue(value));
+							}
+						});
+					}
+					var news = scan.record(keys, () -> new Endpoints(getNodeType(row.get("from")), getNodeType(row.get("to"))));
+					if (news) {
+						memory.allocate(MemoryBudget.ENDPOINTS);
+					}
+					convergence.add(news);
+				}
+			}
+			return scan;
 		}
 
 		Optional<Property> extractProperty(Result.ResultRow resultRow) {
@@ -318,7 +1033,19 @@ final class GraphSchema {
 			}
 
 			@SuppressWarnings("unchecked")
-			var types = ((List<String>) resultRow.get("propertyTypes")).stream()
+			var types = toTypes((List<String>) resultRow.get("propertyTypes"));
+
+			return Optional.of(new GraphSchema.Property(propertyName, types, resultRow.getBoolean("mandatory")));
+		}
+
+		/**
+		 * Maps the names of Neo4j value types (as in {@code db.schema.nodeTypeProperties}) to the types of the JSON schema.
+		 *
+		 * @param typeNames The names of the value types
+		 * @return The mapped types
+		 */
+		static List<GraphSchema.Type> toTypes(Collection<String> typeNames) {
+			return typeNames.stream()
 				.map(t -> {
 					String type;
 					String itemType = null;
@@ -331,31 +1058,114 @@ final class GraphSchema {
 					}
 					return new GraphSchema.Type(type, itemType);
 				}).toList();
+		}
 
-			return Optional.of(new GraphSchema.Property(propertyName, types, resultRow.getBoolean("mandatory")));
+		/**
+		 * {@return the node type of the given labels in scope, created only once per label combination}
+		 * @param labels The labels of a node as returned by Cypher
+		 */
+		@SuppressWarnings("unchecked")
+		private String getNodeType(Object labels) {
+			return nodeTypesByLabels.computeIfAbsent((List<String>) labels, key -> {
+				var nodeType = toNodeType(config.labelFilter().isFiltering() ? key.stream().filter(config.labelFilter()).toList() : key);
+				memory.allocate(MemoryBudget.ENTRY + MemoryBudget.sizeOf(key) + MemoryBudget.sizeOf(nodeType));
+				return nodeType;
+			});
 		}
 
-		private static String splitStripAndJoin(String value, String prefix) {
-			return Arrays.stream(value.split(":"))
-				.map(String::trim)
-				.filter(Predicate.not(String::isBlank))
-				.map(t -> ENCLOSING_TICK_MARKS.matcher(t).replaceAll(m -> m.group(1)))
-				.collect(Collectors.joining(":", prefix + ":", ""));
+		/**
+		 * The node type of nodes without any label in scope, which don't form a node object type. Relationships from or
+		 * to such nodes are left out of the relationship object types.
+		 */
+		static final String UNLABELED = toNodeType(List.of());
+
+		/**
+		 * Creates the node type of a set of labels the same way {@code db.schema.nodeTypeProperties} does.
+		 *
+		 * @param labels The labels of a node in any order
+		 * @return The sorted and quoted labels, each prefixed with a colon
+		 */
+		static String toNodeType(Collection<String> labels) {
+			return ":" + labels.stream()
+				.sorted()
+				.map(v -> "`" + v + "`")
+				.collect(Collectors.joining(":"));
+		}
+
+		/**
+		 * Assembles constant ids from fragments, which are derived once per introspection for each piece of a node type or
+		 * relationship type, usually a quoted label or a relationship type. An id is a prefix followed by the non-blank
+		 * pieces, each trimmed and stripped of enclosing tick marks, all separated by colons. Thread safe, as node object ids
+		 * are derived by both phases.
+		 */
+		static final class ConstantIds {
+
+			/**
+			 * Fragments by the pieces they were derived from, an empty fragment standing for a blank piece.
+			 */
+			private final Map<String, String> fragments = new ConcurrentHashMap<>();
+
+			/**
+			 * {@return the constant id of a node type or relationship type}
+			 * @param prefix The prefix of the id
+			 * @param value  A node type or relationship type, its pieces being separated by colons
+			 */
+			String of(String prefix, String value) {
+				var id = new StringBuilder(prefix.length() + value.length()).append(prefix).append(':');
+				var first = true;
+				for (int start = 0, end; start <= value.length(); start = end + 1) {
+					end = value.indexOf(':', start);
+					if (end < 0) {
+						end = value.length();
+					}
+					var fragment = fragments.computeIfAbsent(value.substring(start, end), ConstantIds::toFragment);
+					if (!fragment.isEmpty()) {
+						if (!first) {
+							id.append(':');
+						}
+						id.append(fragment);
+						first = false;
+					}
+				}
+				return id.toString();
+			}
+
+			private static String toFragment(String piece) {
+				var fragment = piece.trim();
+				if (fragment.isBlank()) {
+					return "";
+				}
+				var last = fragment.length() - 1;
+				if (last < 2 || fragment.charAt(0) != '`' || fragment.charAt(last) != '`') {
+					return fragment;
+				}
+				for (int i = 1; i < last; ++i) {
+					// Line terminators inside tick marks have never been stripped
+					if (isLineTerminator(fragment.charAt(i))) {
+						return fragment;
+					}
+				}
+				return fragment.substring(1, last);
+			}
+
+			private static boolean isLineTerminator(char c) {
+				return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+			}
 		}
 
 		private static class NodeObjectIdGenerator implements UnaryOperator<String> {
 
-			private final boolean useConstantIds;
+			private final ConstantIds constantIds;
 
-			NodeObjectIdGenerator(boolean useConstantIds) {
-				this.useConstantIds = useConstantIds;
+			NodeObjectIdGenerator(ConstantIds constantIds) {
+				this.constantIds = constantIds;
 			}
 
 			@Override
 			public String apply(String nodeType) {
 
-				if (useConstantIds) {
-					return splitStripAndJoin(nodeType, "n");
+				if (constantIds != null) {
+					return constantIds.of("n", nodeType);
 				}
 
 				return ID_GENERATOR.get();
@@ -367,18 +1177,19 @@ final class GraphSchema {
 		 */
 		private static class RelationshipObjectIdGenerator implements BinaryOperator<String> {
 
-			private final boolean useConstantIds;
+			private final ConstantIds constantIds;
+			private final Map<String, String> ids = new HashMap<>();
 			private final Map<String, Map<String, Integer>> counter = new HashMap<>();
 
-			RelationshipObjectIdGenerator(boolean useConstantIds) {
-				this.useConstantIds = useConstantIds;
+			RelationshipObjectIdGenerator(ConstantIds constantIds) {
+				this.constantIds = constantIds;
 			}
 
 			@Override
 			public String apply(String relType, String target) {
 
-				if (useConstantIds) {
-					var id = splitStripAndJoin(relType, "r");
+				if (constantIds != null) {
+					var id = ids.computeIfAbsent(relType, type -> constantIds.of("r", type));
 					var count = counter.computeIfAbsent(id, ignored -> new HashMap<>());
 					if (count.isEmpty()) {
 						count.put(target, 0);
@@ -398,11 +1209,166 @@ final class GraphSchema {
 		}
 
 		/**
+		 * Start and end of a relationship, each given as the node type (the sorted and quoted labels) of the node.
+		 *
+		 * @param from The node type of the start node
+		 * @param to   The node type of the end node
+		 */
+		record Endpoints(String from, String to) {
+		}
+
+		/**
+		 * The properties of all nodes sharing the same labels.
+		 *
+		 * @param nodeLabels The sorted labels
+		 * @param properties The properties of nodes with exactly those labels
+		 */
+		record NodeTypeProperties(List<String> nodeLabels, List<Property> properties) {
+		}
+
+		/**
+		 * A property of a relationship type together with the distinct endpoints of the relationships having it. An empty
+		 * property stands for a type without any properties, in which case the endpoints of all relationships are given.
+		 *
+		 * @param property  The property
+		 * @param endpoints The distinct endpoints
+		 */
+		record RelationshipTypeProperty(Optional<Property> property, Set<Endpoints> endpoints) {
+		}
+
+		/**
+		 * Collects the distinct endpoints of all properties of one relationship type while walking the relationships of that
+		 * type only once. The relationships having a property are sampled by a {@link SamplingStrategy.Sampler sampler}
+		 * per property. A {@literal null} key stands for relationships without any property, in which case all
+		 * relationships count.
+		 * <p>
+		 * The scan is either created for a known set of properties, in which case it is complete as soon as all of their
+		 * samples are, or open, in which case properties are added as they are recorded and the scan is never complete.
 		 * Not thread safe.
+		 *
+		 * @param <K> The type of the property keys
+		 */
+		static final class RelationshipScan<K> {
+
+			private final SamplingStrategy samplingStrategy;
+			private final long sampleSize;
+			private final Function<K, RandomGenerator> randomByKey;
+			private final boolean open;
+			private final Map<K, SamplingStrategy.Sampler> samplers = new HashMap<>();
+			private final Set<K> seenKeys = new HashSet<>();
+			private final Set<KeyedEndpoints<K>> seenEndpoints = new HashSet<>();
+			private int pending;
+			private boolean news;
+
+			/**
+			 * Creates a new scan for a known set of properties.
+			 *
+			 * @param keys             The property keys of a type
+			 * @param samplingStrategy The strategy for sampling the relationships having a property
+			 * @param sampleSize       The number of relationships to look at per property
+			 * @param randomByKey      Creates the source of randomness for sampling the relationships having a property
+			 */
+			RelationshipScan(Collection<K> keys, SamplingStrategy samplingStrategy, long sampleSize, Function<K, RandomGenerator> randomByKey) {
+				this(samplingStrategy, sampleSize, randomByKey, false);
+				for (K key : keys) {
+					this.samplers.put(key, this.samplingStrategy.newSampler(sampleSize, randomByKey.apply(key)));
+				}
+				this.pending = this.samplers.size();
+			}
+
+			private RelationshipScan(SamplingStrategy samplingStrategy, long sampleSize, Function<K, RandomGenerator> randomByKey, boolean open) {
+				// Looking at all relationships leaves nothing to choose
+				this.samplingStrategy = sampleSize == Long.MAX_VALUE ? SamplingStrategy.FIRST_N : samplingStrategy;
+				this.sampleSize = sampleSize;
+				this.randomByKey = randomByKey;
+				this.open = open;
+			}
+
+			/**
+			 * Creates a new scan that accepts all properties.
+			 *
+			 * @param samplingStrategy The strategy for sampling the relationships having a property
+			 * @param sampleSize       The number of relationships to look at per property
+			 * @param randomByKey      Creates the source of randomness for sampling the relationships having a property
+			 * @param <K>              The type of the property keys
+			 * @return An open scan
+			 */
+			static <K> RelationshipScan<K> open(SamplingStrategy samplingStrategy, long sampleSize, Function<K, RandomGenerator> randomByKey) {
+				return new RelationshipScan<>(samplingStrategy, sampleSize, randomByKey, true);
+			}
+
+			/**
+			 * {@return true if all properties of a closed scan are satisfied}
+			 */
+			boolean isComplete() {
+				return !open && pending == 0;
+			}
+
+			/**
+			 * Records a single relationship, including it in the sample for relationships without any property.
+			 *
+			 * @param keys                  The keys of the properties present on the relationship
+			 * @param relationshipEndpoints Resolves the endpoints of the relationship, called at most once and only if needed
+			 * @return {@literal true} if the relationship brought up a new property key or new endpoints for a property
+			 */
+			boolean record(Iterable<K> keys, Supplier<Endpoints> relationshipEndpoints) {
+				news = false;
+				var endpoints = record(null, null, relationshipEndpoints);
+				recordEach(keys, endpoints == null ? relationshipEndpoints : () -> endpoints);
+				return news;
+			}
+
+			/**
+			 * Records a single relationship for its properties only.
+			 *
+			 * @param keys                  The keys of the properties present on the relationship
+			 * @param relationshipEndpoints Resolves the endpoints of the relationship, called at most once and only if needed
+			 * @return {@literal true} if the relationship brought up a new property key or new endpoints for a property
+			 */
+			boolean recordProperties(Iterable<K> keys, Supplier<Endpoints> relationshipEndpoints) {
+				news = false;
+				recordEach(keys, relationshipEndpoints);
+				return news;
+			}
+
+			private void recordEach(Iterable<K> keys, Supplier<Endpoints> relationshipEndpoints) {
+				Endpoints endpoints = null;
+				for (K key : keys) {
+					endpoints = record(key, endpoints, relationshipEndpoints);
+				}
+			}
+
+			private Endpoints record(K key, Endpoints endpoints, Supplier<Endpoints> relationshipEndpoints) {
+				news |= seenKeys.add(key);
+				var sampler = open ? samplers.computeIfAbsent(key, ignored -> samplingStrategy.newSampler(sampleSize, randomByKey.apply(key))) : samplers.get(key);
+				if (sampler == null || sampler.isComplete() || !sampler.select()) {
+					return endpoints;
+				}
+				var result = endpoints == null ? relationshipEndpoints.get() : endpoints;
+				news |= seenEndpoints.add(new KeyedEndpoints<>(key, result));
+				sampler.add(result);
+				if (!open && sampler.isComplete()) {
+					--pending;
+				}
+				return result;
+			}
+
+			Set<Endpoints> getEndpoints(K key) {
+				var sampler = samplers.get(key);
+				return sampler == null ? Set.of() : sampler.getEndpoints();
+			}
+
+			private record KeyedEndpoints<K>(K key, Endpoints endpoints) {
+			}
+		}
+
+		/**
+		 * Thread safe, applying the delegate at most once per value, so that both phases see the same ids even if they are
+		 * generated.
 		 */
 		private static class CachingUnaryOperator<T> implements UnaryOperator<T> {
 
-			private final Map<T, T> cache = new HashMap<>();
+			private final Map<T, T> cache = new ConcurrentHashMap<>();
 			private final UnaryOperator<T> delegate;
 
 			CachingUnaryOperator(UnaryOperator<T> delegate) {
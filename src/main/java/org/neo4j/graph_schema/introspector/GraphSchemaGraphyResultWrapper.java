@@ -52,7 +52,7 @@ public final class GraphSchemaGraphyResultWrapper {
 		var relationshipTypes = graphSchema.relationshipTypes().values().stream()
 			.collect(Collectors.toMap(Token::id, Token::value));
 
-		var result = new GraphSchemaGraphyResultWrapper();
+		var result = new GraphSchemaGraphyResultWrapper(graphSchema);
 
 		var nodeObjectTypeNodes = new HashMap<Ref, Node>();
 		for (NodeObjectType nodeObjectType : graphSchema.nodeObjectTypes().values()) {
@@ -84,7 +84,7 @@ public final class GraphSchemaGraphyResultWrapper {
 		var relationshipTypeNodes = graphSchema.relationshipTypes().values().stream()
 			.collect(Collectors.toMap(Token::id, t -> toVirtualNode(t, "RelationshipType")));
 
-		var result = new GraphSchemaGraphyResultWrapper();
+		var result = new GraphSchemaGraphyResultWrapper(graphSchema);
 
 		var nodeObjectTypeNodes = new HashMap<Ref, Node>();
 		for (var entry : graphSchema.nodeObjectTypes().entrySet()) {
@@ -122,6 +122,13 @@ public final class GraphSchemaGraphyResultWrapper {
 	// Public field required for Neo4j internal API.
 	public final List<Node> nodes = new ArrayList<>();
 	public final List<Relationship> relationships = new ArrayList<>();
+	public final boolean complete;
+	public final Map<String, Object> unexplored;
+
+	private GraphSchemaGraphyResultWrapper(GraphSchema graphSchema) {
+		this.complete = graphSchema.complete();
+		this.unexplored = graphSchema.unexplored().asMap();
+	}
 
 	/**
 	 * A virtual entity, spotting a negative ID and a random element id.
@@ -18,19 +18,24 @@
  */
 package org.neo4j.graph_schema.introspector;
 
+import java.util.Map;
+
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 /**
  * Wrapper for a string, needed for Neo4j Procedures.
  *
- * @param value The wrapped value
+ * @param value      The wrapped value
+ * @param samples    The number of samples taken per label and relationship type, see {@link GraphSchema.Samples}
+ * @param complete   {@literal false} if the time budget was used up before all labels and relationship types have been explored
+ * @param unexplored The labels and relationship types not fully explored, see {@link GraphSchema.Unexplored}
  */
-public record GraphSchemaJSONResultWrapper(String value) {
+public record GraphSchemaJSONResultWrapper(String value, Map<String, Object> samples, boolean complete, Map<String, Object> unexplored) {
 
 	public static GraphSchemaJSONResultWrapper of(GraphSchema graphSchema, Introspect.Config config) throws JsonProcessingException {
 
 		var objectMapper = GraphSchemaModule.getGraphSchemaObjectMapper();
 		var writer = config.prettyPrint() ? objectMapper.writerWithDefaultPrettyPrinter() : objectMapper.writer();
-		return new GraphSchemaJSONResultWrapper(writer.writeValueAsString(graphSchema));
+		return new GraphSchemaJSONResultWrapper(writer.writeValueAsString(graphSchema), graphSchema.samples().asMap(), graphSchema.complete(), graphSchema.unexplored().asMap());
 	}
 }
@@ -23,6 +23,7 @@ import java.io.Serial;
 import java.util.Collection;
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.fasterxml.jackson.core.JsonGenerator;
@@ -75,6 +76,7 @@ final class GraphSchemaModule extends SimpleModule {
 		addSerializer(GraphSchema.class, new GraphSchemaSerializer());
 		addSerializer(GraphSchema.Ref.class, new RefSerializer());
 		setMixInAnnotation(GraphSchema.Property.class, PropertyMixin.class);
+		setMixInAnnotation(GraphSchema.Statistics.class, StatisticsMixin.class);
 		setMixInAnnotation(GraphSchema.NodeObjectType.class, NodeObjectTypeMixin.class);
 		setMixInAnnotation(GraphSchema.Token.class, TokenMixin.class);
 		setMixInAnnotation(GraphSchema.RelationshipObjectType.class, RelationshipObjectTypeMixin.class);
@@ -136,7 +138,7 @@ final class GraphSchemaModule extends SimpleModule {
 		}
 	}
 
-	@JsonPropertyOrder({"token", "type", "nullable"})
+	@JsonPropertyOrder({"token", "type", "nullable", "statistics"})
 	private abstract static class PropertyMixin {
 
 		@JsonProperty("type") @JsonSerialize(using = TypeListSerializer.class)
@@ -144,6 +146,13 @@ final class GraphSchemaModule extends SimpleModule {
 
 		@JsonProperty("nullable") @JsonSerialize(using = InvertingBooleanSerializer.class)
 		abstract boolean mandatory();
+
+		@JsonInclude(JsonInclude.Include.NON_NULL)
+		abstract GraphSchema.Statistics statistics();
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private abstract static class StatisticsMixin {
 	}
 
 	private static class InvertingBooleanSerializer extends StdSerializer<Boolean> {
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2023 "Neo4j,"
+ * Neo4j Sweden AB [https://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.graph_schema.introspector;
+
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+import org.neo4j.hashing.HashFunction;
+import org.neo4j.memory.HeapEstimator;
+import org.neo4j.values.storable.Value;
+
+/**
+ * A HyperLogLog sketch, estimating the number of distinct values added to it in constant space, see Flajolet et al.,
+ * "HyperLogLog: the analysis of a near-optimal cardinality estimation algorithm". Up to {@value #EXACT_THRESHOLD}
+ * distinct values are counted exactly by keeping their hashes, small cardinalities beyond that are estimated by linear
+ * counting. With 2<sup>12</sup> registers of one byte each, the standard error is about 1.6%. Values are hashed with
+ * 64-bit XXH, the same way regardless of whether they are read through Cypher or the kernel. Not thread safe.
+ */
+final class HyperLogLog {
+
+	/**
+	 * The number of bits of a hash selecting the register.
+	 */
+	private static final int PRECISION = 12;
+
+	private static final int NUMBER_OF_REGISTERS = 1 << PRECISION;
+
+	private static final double ALPHA = 0.7213 / (1 + 1.079 / NUMBER_OF_REGISTERS);
+
+	private static final HashFunction HASH_FUNCTION = HashFunction.incrementalXXH64();
+
+	/**
+	 * The number of distinct hashes up to which the values are counted exactly.
+	 */
+	static final int EXACT_THRESHOLD = 512;
+
+	/**
+	 * The estimated size of a sketch, including the hashes kept for exact counting at their largest.
+	 */
+	static final long SIZE = HeapEstimator.shallowSizeOfInstance(HyperLogLog.class) + HeapEstimator.sizeOf(new byte[NUMBER_OF_REGISTERS])
+		+ HeapEstimator.shallowSizeOfInstance(LongHashSet.class) + HeapEstimator.sizeOf(new long[2 * EXACT_THRESHOLD]);
+
+	/**
+	 * The maximum rank seen per register, a rank being the position of the leftmost one bit in a hash after the bits
+	 * selecting the register.
+	 */
+	private final byte[] registers = new byte[NUMBER_OF_REGISTERS];
+
+	/**
+	 * The distinct hashes added, {@literal null} once there have been more than {@link #EXACT_THRESHOLD}. The registers
+	 * are always maintained as well.
+	 */
+	private LongHashSet hashes = new LongHashSet();
+
+	/**
+	 * Adds a single value.
+	 *
+	 * @param value The value to add
+	 */
+	void add(Value value) {
+		addHash(HASH_FUNCTION.finalise(value.updateHash(HASH_FUNCTION, HASH_FUNCTION.initialise(0L))));
+	}
+
+	/**
+	 * Adds the hash of a single value.
+	 *
+	 * @param hash A uniformly distributed 64-bit hash
+	 */
+	void addHash(long hash) {
+		if (hashes != null && hashes.add(hash) && hashes.size() > EXACT_THRESHOLD) {
+			hashes = null;
+		}
+		var register = (int) (hash >>> (Long.SIZE - PRECISION));
+		// The guard bit caps the rank if all remaining bits are zero
+		var rank = (byte) (Long.numberOfLeadingZeros(hash << PRECISION | 1L << (PRECISION - 1)) + 1);
+		if (rank > registers[register]) {
+			registers[register] = rank;
+		}
+	}
+
+	/**
+	 * Merges another sketch into this one, so that this sketch estimates the distinct values added to either of them.
+	 *
+	 * @param other The sketch to merge
+	 * @return This instance
+	 */
+	HyperLogLog merge(HyperLogLog other) {
+		for (int i = 0; i < NUMBER_OF_REGISTERS; ++i) {
+			registers[i] = (byte) Math.max(registers[i], other.registers[i]);
+		}
+		if (hashes != null && other.hashes != null) {
+			hashes.addAll(other.hashes);
+		}
+		if (other.hashes == null || hashes != null && hashes.size() > EXACT_THRESHOLD) {
+			hashes = null;
+		}
+		return this;
+	}
+
+	/**
+	 * {@return the estimated number of distinct values added, exact up to {@link #EXACT_THRESHOLD} distinct values}
+	 */
+	long estimate() {
+
+		if (hashes != null) {
+			return hashes.size();
+		}
+
+		double sum = 0;
+		int emptyRegisters = 0;
+		for (byte rank : registers) {
+			sum += 1.0 / (1L << rank);
+			if (rank == 0) {
+				++emptyRegisters;
+			}
+		}
+		var estimate = ALPHA * NUMBER_OF_REGISTERS * NUMBER_OF_REGISTERS / sum;
+		if (estimate <= 2.5 * NUMBER_OF_REGISTERS && emptyRegisters > 0) {
+			estimate = NUMBER_OF_REGISTERS * Math.log((double) NUMBER_OF_REGISTERS / emptyRegisters);
+		}
+		return Math.round(estimate);
+	}
+}
@@ -18,9 +18,13 @@
  */
 package org.neo4j.graph_schema.introspector;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.stream.Stream;
 
+import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Description;
@@ -40,47 +44,191 @@ import org.neo4j.procedure.Procedure;
  */
 public class Introspect {
 
+	@Context
+	public GraphDatabaseService databaseService;
+
 	@Context
 	public Transaction transaction;
 
 	/**
 	 * Shared configuration of the functions and procedures in this class.
 	 *
-	 * @param useConstantIds Whether to use constant ids (derived from tokens) or generate ids
-	 * @param prettyPrint    Whether to pretty print the result or not
-	 * @param quoteTokens    Whether to always quote tokens or not
-	 * @param sampleOnly     Whether to sample relationships for determining properties on concrete relationships or not (defaults to {@literal true})
+	 * @param useConstantIds          Whether to use constant ids (derived from tokens) or generate ids
+	 * @param prettyPrint             Whether to pretty print the result or not
+	 * @param quoteTokens             Whether to always quote tokens or not
+	 * @param sampleOnly              Whether to sample relationships for determining properties on concrete relationships or not (defaults to {@literal true})
+	 * @param sampleNodes             Whether to sample the nodes of each label as well when {@literal sampleOnly} is set, instead of looking at all nodes (defaults to {@literal false})
+	 * @param sampleSize              The number of relationships per property and of nodes per label to be looked at when sampling (defaults to {@literal 100})
+	 * @param samplingStrategy        The strategy for sampling relationships (defaults to {@link SamplingStrategy#FIRST_N})
+	 * @param engine                  The engine used for introspection (defaults to {@link Engine#CYPHER})
+	 * @param useCountStore           Whether to derive the endpoints of relationships from the count store where possible, requires the {@link Engine#KERNEL kernel engine} and all nodes to be looked at
+	 * @param parallelism             The number of workers introspecting relationship types and labels in parallel, each in a transaction of its own, capped at the number of available processors (defaults to {@literal 1}, using only the calling transaction)
+	 * @param convergenceWindow       The number of samples in a row without a new label combination, property key or property type after which sampling a label or relationship type stops (defaults to {@literal 0}, always taking the full sample size), see {@link Convergence}
+	 * @param maxRelationshipsPerNode The number of relationships of a type sampled per start node, so that hubs don't take up the whole sample (defaults to {@literal 0}, unlimited), requires the {@link Engine#KERNEL kernel engine}
+	 * @param seed                    The seed for all random sampling, making the sampled schema reproducible for the same data (defaults to {@literal null}, sampling differently on each call)
+	 * @param timeBudgetMs            The time in milliseconds after which the schema derived so far is returned, marked as incomplete (defaults to {@literal 0}, unlimited), implies the {@link Engine#KERNEL kernel engine}, see {@link Deadline}
+	 * @param maxMemoryBytes          The estimated number of bytes the intermediate results may take up on the heap before introspection fails (defaults to {@literal 0}, limited by the transaction memory limits only), see {@link MemoryBudget}
+	 * @param labelFilter             The labels to introspect, from the glob patterns {@literal includeLabels} and {@literal excludeLabels} (defaults to all labels), see {@link TokenFilter}
+	 * @param typeFilter              The relationship types to introspect, from the glob patterns {@literal includeTypes} and {@literal excludeTypes} (defaults to all types), see {@link TokenFilter}
+	 * @param statistics              Whether to derive statistics of the property values while looking at the nodes and relationships (defaults to {@literal false}), see {@link GraphSchema.Statistics}
 	 */
-	record Config(boolean useConstantIds, boolean prettyPrint, boolean quoteTokens, boolean sampleOnly) {
+	record Config(
+		boolean useConstantIds,
+		boolean prettyPrint,
+		boolean quoteTokens,
+		boolean sampleOnly,
+		boolean sampleNodes,
+		long sampleSize,
+		SamplingStrategy samplingStrategy,
+		Engine engine,
+		boolean useCountStore,
+		int parallelism,
+		long convergenceWindow,
+		int maxRelationshipsPerNode,
+		Long seed,
+		long timeBudgetMs,
+		long maxMemoryBytes,
+		TokenFilter labelFilter,
+		TokenFilter typeFilter,
+		boolean statistics
+	) {
+
+		Config {
+			// The builtin procedures the Cypher engine relies on cannot be interrupted, so budgeted runs use the kernel engine
+			if (timeBudgetMs > 0) {
+				engine = Engine.KERNEL;
+			}
+			if (useCountStore && engine != Engine.KERNEL) {
+				throw new IllegalArgumentException("The count store can only be used with the kernel engine");
+			}
+			if (useCountStore && sampleNodes) {
+				throw new IllegalArgumentException("The count store can only be used when all nodes are looked at");
+			}
+			if (samplingStrategy == SamplingStrategy.RANDOM_IDS && engine != Engine.KERNEL) {
+				throw new IllegalArgumentException("Random ids can only be sampled with the kernel engine");
+			}
+			if (sampleSize < 1) {
+				throw new IllegalArgumentException("The sample size must be at least 1");
+			}
+			if (parallelism < 1) {
+				throw new IllegalArgumentException("The parallelism must be at least 1");
+			}
+			if (convergenceWindow < 0) {
+				throw new IllegalArgumentException("The convergence window must not be negative");
+			}
+			if (maxRelationshipsPerNode < 0) {
+				throw new IllegalArgumentException("The number of relationships per node must not be negative");
+			}
+			if (maxRelationshipsPerNode > 0 && engine != Engine.KERNEL) {
+				throw new IllegalArgumentException("The number of relationships per node can only be capped with the kernel engine");
+			}
+			if (timeBudgetMs < 0) {
+				throw new IllegalArgumentException("The time budget must not be negative");
+			}
+			if (maxMemoryBytes < 0) {
+				throw new IllegalArgumentException("The memory limit must not be negative");
+			}
+		}
 
 		Config(Map<String, Object> params) {
 			this(
 				(boolean) params.getOrDefault("useConstantIds", true),
 				(boolean) params.getOrDefault("prettyPrint", false),
 				(boolean) params.getOrDefault("quoteTokens", true),
-				(boolean) params.getOrDefault("sampleOnly", true)
+				(boolean) params.getOrDefault("sampleOnly", true),
+				(boolean) params.getOrDefault("sampleNodes", false),
+				((Number) params.getOrDefault("sampleSize", GraphSchema.Introspector.DEFAULT_SAMPLE_SIZE)).longValue(),
+				SamplingStrategy.of((String) params.getOrDefault("samplingStrategy", "firstN")),
+				Engine.valueOf(((String) params.getOrDefault("engine", "cypher")).toUpperCase(Locale.ROOT)),
+				(boolean) params.getOrDefault("useCountStore", false),
+				((Number) params.getOrDefault("parallelism", 1)).intValue(),
+				((Number) params.getOrDefault("convergenceWindow", 0)).longValue(),
+				((Number) params.getOrDefault("maxRelationshipsPerNode", 0)).intValue(),
+				params.get("seed") instanceof Number value ? value.longValue() : null,
+				((Number) params.getOrDefault("timeBudgetMs", 0)).longValue(),
+				((Number) params.getOrDefault("maxMemoryBytes", 0)).longValue(),
+				TokenFilter.of(getPatterns(params, "includeLabels"), getPatterns(params, "excludeLabels")),
+				TokenFilter.of(getPatterns(params, "includeTypes"), getPatterns(params, "excludeTypes")),
+				(boolean) params.getOrDefault("statistics", false)
 			);
 		}
+
+		/**
+		 * {@return a copy of this configuration, introspecting only the given relationship types}
+		 * @param types The relationship types in scope
+		 */
+		Config withTypeFilter(TokenFilter types) {
+			return new Config(useConstantIds, prettyPrint, quoteTokens, sampleOnly, sampleNodes, sampleSize, samplingStrategy, engine, useCountStore,
+				parallelism, convergenceWindow, maxRelationshipsPerNode, seed, timeBudgetMs, maxMemoryBytes, labelFilter, types, statistics);
+		}
+
+		/**
+		 * {@return the glob patterns stored under the given key, either a single string or a list of strings}
+		 */
+		@SuppressWarnings("unchecked")
+		private static List<String> getPatterns(Map<String, Object> params, String key) {
+			var patterns = params.getOrDefault(key, List.of());
+			return patterns instanceof String pattern ? List.of(pattern) : List.copyOf((List<String>) patterns);
+		}
+	}
+
+	/**
+	 * The available engines for introspecting a database.
+	 */
+	enum Engine {
+		/**
+		 * Uses Cypher and the builtin {@code db.schema.*} procedures.
+		 */
+		CYPHER,
+		/**
+		 * Works directly on the cursors of the kernel, bypassing Cypher entirely.
+		 */
+		KERNEL
 	}
 
 	@Procedure(name = "experimental.introspect.asJson", mode = Mode.READ)
 	@Description("" +
 		"Call with {useConstantIds: false} to generate substitute ids for all tokens and use {prettyPrint: true} for enabling pretty printing;" +
-		"{quoteTokens: false} will disable quotation of tokens.")
+		"{quoteTokens: false} will disable quotation of tokens; {engine: 'kernel'} introspects without using Cypher;" +
+		"{parallelism: 4} introspects with 4 workers in parallel; {sampleSize: 1000, samplingStrategy: 'reservoir'} changes how relationships are sampled;" +
+		"{sampleNodes: true} looks only at the first nodes of each label instead of all nodes, so that properties missing on later nodes might be reported as not nullable;" +
+		"{convergenceWindow: 20} stops sampling a label or type after 20 samples without anything new, the samples taken are yielded as samples;" +
+		"{engine: 'kernel', maxRelationshipsPerNode: 10} samples at most 10 relationships of a type per start node;" +
+		"{seed: 42} makes random sampling reproducible;" +
+		"{timeBudgetMs: 10000} returns the schema derived within 10 seconds, yielding complete: false and the unexplored labels and types if that was not enough, always using the kernel engine;" +
+		"{maxMemoryBytes: 100000000} fails if the intermediate results take more than about 100 MB of heap, which is accounted to the transaction in any case;" +
+		"{includeLabels: ['Person', 'Movie*'], excludeTypes: ['_*']} introspects only the matching labels and relationship types, the others are not read at all;" +
+		"{statistics: true} counts the distinct values of each property and their uniqueness from the nodes and relationships looked at, estimating both beyond 512 distinct values.")
 	public Stream<GraphSchemaJSONResultWrapper> introspectAsJson(@Name("params") Map<String, Object> params) throws Exception {
 
 		var config = new Config(params);
-		var graphSchema = GraphSchema.build(transaction, config);
+		var graphSchema = GraphSchema.build(databaseService, transaction, config);
 
 		return Stream.of(GraphSchemaJSONResultWrapper.of(graphSchema, config));
 	}
 
 	@Procedure(name = "experimental.introspect.asGraph", mode = Mode.READ)
-	@Description("Visualizes the JSON generated by this introspector in a graphy way")
+	@Description("Visualizes the JSON generated by this introspector in a graphy way, takes the same options as asJson")
 	public Stream<GraphSchemaGraphyResultWrapper> introspectAndVisualize(@Name("params") Map<String, Object> params) throws Exception {
 
-		var graphSchema = GraphSchema.build(transaction, new Config(params));
+		var graphSchema = GraphSchema.build(databaseService, transaction, new Config(params));
 		var flat = (boolean) params.getOrDefault("flat", false);
 		return Stream.of(flat ? GraphSchemaGraphyResultWrapper.flat(graphSchema) : GraphSchemaGraphyResultWrapper.full(graphSchema));
 	}
+
+	@Procedure(name = "experimental.introspect.neighborhood", mode = Mode.READ)
+	@Description("" +
+		"Introspects only the node object types within {depth: 1} hops around the node object types with the given label and the relationship object types between them;" +
+		"the labels and types that might be part of the neighborhood are found from the count store, all others are not read at all, hence the kernel engine is always used. Takes the same options as asJson")
+	public Stream<GraphSchemaJSONResultWrapper> introspectNeighborhood(@Name("label") String label, @Name(value = "params", defaultValue = "{}") Map<String, Object> params) throws Exception {
+
+		// Validated against the kernel engine, so that its options are accepted without asking for it explicitly
+		var kernelParams = new HashMap<>(params);
+		kernelParams.put("engine", Engine.KERNEL.name());
+		var config = new Config(kernelParams);
+		var depth = ((Number) params.getOrDefault("depth", 1)).intValue();
+		var graphSchema = Neighborhood.introspect(databaseService, transaction, label, depth, config);
+
+		return Stream.of(GraphSchemaJSONResultWrapper.of(graphSchema, config));
+	}
 }
@@ -0,0 +1,1046 @@
+/*
+ * Copyright (c) 2023 "Neo4j,"
+ * Neo4j Sweden AB [https://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.graph_schema.introspector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import org.eclipse.collections.impl.map.mutable.primitive.LongObjectHashMap;
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+import org.neo4j.common.EntityType;
+import org.neo4j.exceptions.UnsatisfiedDependencyException;
+import org.neo4j.graph_schema.introspector.Introspect.Config;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.internal.id.IdGenerator;
+import org.neo4j.internal.id.IdGeneratorFactory;
+import org.neo4j.internal.id.IdType;
+import org.neo4j.internal.kernel.api.IndexQueryConstraints;
+import org.neo4j.internal.kernel.api.InternalIndexState;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.NodeLabelIndexCursor;
+import org.neo4j.internal.kernel.api.PartitionedScan;
+import org.neo4j.internal.kernel.api.PropertyCursor;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.internal.kernel.api.RelationshipScanCursor;
+import org.neo4j.internal.kernel.api.TokenPredicate;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.internal.kernel.api.TokenSet;
+import org.neo4j.internal.recordstorage.RecordIdType;
+import org.neo4j.internal.schema.IndexDescriptor;
+import org.neo4j.internal.schema.SchemaDescriptors;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.memory.HeapEstimator;
+import org.neo4j.storageengine.api.RelationshipSelection;
+
+/**
+ * An introspector working directly on the cursors of the kernel, skipping query parsing, planning and result rows
+ * altogether. Nodes are read through the label lookup index, relationships through the relationship type lookup index.
+ * If either of those indexes is not available, the corresponding store is scanned instead.
+ * <p>
+ * The results are the same as with the Cypher based introspector, with the exception of nodes without any label: They
+ * don't form a node object type with this introspector.
+ * <p>
+ * Optionally, the endpoints of relationships are derived from the count store, see {@link #getEndpointsFromCountStore(KernelTransaction, int)}.
+ * <p>
+ * If {@link Config#sampleNodes() nodes are sampled}, only the first nodes of each label are read, see
+ * {@link #getNodeSampleSize(Config)}. This requires the label lookup index, without it all nodes are read. With
+ * {@link SamplingStrategy#RANDOM_IDS}, nodes and relationships are probed at random ids instead. Sampling a label or
+ * relationship type stops early once it has {@link Convergence converged}. Hubs, that is start nodes with more
+ * relationships of a type than {@link Config#maxRelationshipsPerNode()}, contribute at most that many relationships to
+ * the endpoints and the convergence of that type, see {@link RelationshipTypeScan#admit(RelationshipScanCursor, NodeCursor)}.
+ * <p>
+ * Nodes and relationships are aggregated by the ids of their label, type and property key tokens. Names are only
+ * resolved once per label combination and property, when the results are handed over to the base class.
+ * <p>
+ * Labels and relationship types out of {@link Config#labelFilter() scope} are never scanned, and labels out of scope are
+ * dropped from the label sets as soon as nodes are read, so that they don't form node types of their own. Scans can be
+ * further restricted to the {@link #labelsToScan labels to scan}.
+ * <p>
+ * Relationship types are scanned by the {@link Workers workers}, one type at a time, while the nodes are scanned, if
+ * {@link #canIntrospectPhasesConcurrently() possible}. Without a relationship type lookup
+ * index, the relationship store is scanned in the calling transaction. With more than one worker, nodes are scanned in
+ * partitions, see {@link #scanNodesInPartitions(IndexDescriptor, List)}.
+ * <p>
+ * All loops over nodes and relationships stop once the {@link Deadline deadline} expired, marking the labels and types
+ * they were looking at as unexplored, and are cancelled as soon as the calling transaction is terminated, see
+ * {@link #shouldStop()}.
+ */
+final class KernelIntrospector extends GraphSchema.Introspector {
+
+	/**
+	 * The number of partitions per worker when scanning nodes in partitions.
+	 */
+	private static final int PARTITIONS_PER_WORKER = 4;
+
+	/**
+	 * The number of random ids probed per wanted sample before giving up on probing, see {@link SamplingStrategy#RANDOM_IDS}.
+	 */
+	private static final int PROBES_PER_SAMPLE = 4;
+
+	private final GraphDatabaseService databaseService;
+
+	private final KernelTransaction kernelTransaction;
+
+	/**
+	 * Node types by label set, shared between node and relationship introspection and between workers.
+	 */
+	private final Map<LabelSet, String> nodeTypes = new ConcurrentHashMap<>();
+
+	/**
+	 * All label sets found while retrieving the node type properties, ordered by their node type.
+	 */
+	private final List<LabelSet> labelSets = new ArrayList<>();
+
+	/**
+	 * Whether the node phase has looked at all nodes, so that the {@link #labelSets label sets} are complete.
+	 */
+	private boolean allNodesScanned;
+
+	/**
+	 * The ids of the labels in scope, {@literal null} if all labels are.
+	 */
+	private final IntHashSet labelsInScope;
+
+	/**
+	 * The ids of the labels to scan, {@literal null} if all labels are scanned.
+	 */
+	private final IntHashSet labelIdsToScan;
+
+	KernelIntrospector(GraphDatabaseService databaseService, Transaction transaction, Workers workers, Config config) {
+		this(databaseService, transaction, workers, config, config.labelFilter(), Deadline.of(config.timeBudgetMs()));
+	}
+
+	KernelIntrospector(GraphDatabaseService databaseService, Transaction transaction, Workers workers, Config config, TokenFilter labelsToScan, Deadline deadline) {
+		super(transaction, workers, config, labelsToScan, deadline);
+		this.databaseService = databaseService;
+		this.kernelTransaction = kernelTransaction(transaction);
+		this.labelsInScope = getLabelIds(config.labelFilter());
+		this.labelIdsToScan = labelsToScan == config.labelFilter() ? labelsInScope : getLabelIds(labelsToScan);
+	}
+
+	private static KernelTransaction kernelTransaction(Transaction transaction) {
+		return ((InternalTransaction) transaction).kernelTransaction();
+	}
+
+	/**
+	 * {@return the ids of the labels passing the given filter, {@literal null} if it doesn't filter at all}
+	 */
+	private IntHashSet getLabelIds(TokenFilter filter) {
+
+		if (!filter.isFiltering()) {
+			return null;
+		}
+		var ids = new IntHashSet();
+		kernelTransaction.tokenRead().labelsGetAllTokens().forEachRemaining(label -> {
+			if (filter.test(label.name())) {
+				ids.add(label.id());
+			}
+		});
+		return ids;
+	}
+
+	/**
+	 * {@inheritDoc} Deriving the endpoints of relationships from the count store requires the label sets found by the
+	 * node phase, so that both phases run one after another in that case.
+	 */
+	@Override
+	boolean canIntrospectPhasesConcurrently() {
+		return super.canIntrospectPhasesConcurrently() && !config.useCountStore();
+	}
+
+	@Override
+	Map<String, NodeTypeProperties> getNodeTypeProperties() throws Exception {
+
+		var read = kernelTransaction.dataRead();
+		var tokenRead = kernelTransaction.tokenRead();
+
+		var labelIndex = findTokenIndex(kernelTransaction, EntityType.NODE);
+		var labels = new ArrayList<Integer>();
+		var allLabels = tokenRead.labelsGetAllTokens();
+		while (allLabels.hasNext()) {
+			var label = allLabels.next();
+			if (labelsToScan.test(label.name()) && read.countsForNode(label.id()) > 0) {
+				labels.add(label.id());
+			}
+		}
+
+		var sampleSize = getNodeSampleSize(config);
+		var sampleOnly = labelIndex.isPresent() && sampleSize != Long.MAX_VALUE;
+		var highestNodeId = sampleSize != Long.MAX_VALUE && config.samplingStrategy() == SamplingStrategy.RANDOM_IDS ? getHighestPossibleIdInUse(RecordIdType.NODE) : OptionalLong.empty();
+
+		Map<LabelSet, PropertyStatistics> statisticsByLabels;
+		if (highestNodeId.isPresent()) {
+			statisticsByLabels = probeNodes(highestNodeId.getAsLong(), labels, labelIndex, sampleSize);
+		// Partitioned scans don't support transaction state
+		} else if (!sampleOnly && workers.parallelism() > 1 && !workers.callingTransactionHasChanges()) {
+			statisticsByLabels = scanNodesInPartitions(labelIndex.orElse(null), labels);
+		} else {
+			statisticsByLabels = new HashMap<>();
+			var cursors = kernelTransaction.cursors();
+			var cursorContext = kernelTransaction.cursorContext();
+			try (
+				var nodeCursor = cursors.allocateNodeCursor(cursorContext);
+				var propertyCursor = cursors.allocatePropertyCursor(cursorContext, kernelTransaction.memoryTracker())
+			) {
+				if (labelIndex.isPresent()) {
+					var session = read.tokenReadSession(labelIndex.get());
+					var sampledNodes = new HashSet<Long>();
+					try (var labelIndexCursor = cursors.allocateNodeLabelIndexCursor(cursorContext)) {
+						for (int label : labels) {
+							read.nodeLabelScan(session, labelIndexCursor, IndexQueryConstraints.unconstrained(), new TokenPredicate(label), cursorContext);
+							boolean explored;
+							if (sampleOnly) {
+								var convergence = new Convergence(sampleSize, getConvergenceWindow(config));
+								explored = sample(convergence, sampledNodes, labelIndexCursor, read, nodeCursor, propertyCursor, statisticsByLabels);
+								samplesByLabel.put(tokenRead.labelGetName(label), convergence.samples());
+							} else {
+								explored = collect(label, labelIndexCursor, read, nodeCursor, propertyCursor, statisticsByLabels);
+							}
+							if (!explored) {
+								unexploredLabels.add(tokenRead.labelGetName(label));
+							}
+						}
+					}
+				} else {
+					read.allNodesScan(nodeCursor);
+					if (!collect(nodeCursor, propertyCursor, statisticsByLabels)) {
+						markUnexplored(labels, unexploredLabels, tokenRead::labelGetName);
+					}
+				}
+			}
+		}
+
+		var nodeTypeProperties = new TreeMap<String, NodeTypeProperties>();
+		var labelSetsByNodeType = new TreeMap<String, LabelSet>();
+		for (var entry : statisticsByLabels.entrySet()) {
+			var labelSet = entry.getKey();
+			var nodeType = getNodeType(labelSet, tokenRead);
+			nodeTypeProperties.put(nodeType, new NodeTypeProperties(labelSet.names(tokenRead), entry.getValue().toProperties(tokenRead::propertyKeyGetName)));
+			labelSetsByNodeType.put(nodeType, labelSet);
+		}
+		this.labelSets.addAll(labelSetsByNodeType.values());
+		this.allNodesScanned = highestNodeId.isEmpty() && !sampleOnly && unexploredLabels.isEmpty();
+		return nodeTypeProperties;
+	}
+
+	/**
+	 * Splits the label lookup index (or the node store, if there is no such index) into partitions, that are scanned by
+	 * all workers in parallel within the calling transaction. Each worker collects statistics for the partitions it
+	 * reserved, which are merged afterwards. The number of partitions is a multiple of the number of workers, so that
+	 * workers finishing early can pick up more of the remaining work.
+	 *
+	 * @param labelIndex The label lookup index, {@literal null} if not available
+	 * @param labels     The ids of the labels in use
+	 * @return The merged statistics by label set
+	 * @throws Exception Any exception that might occur
+	 */
+	private Map<LabelSet, PropertyStatistics> scanNodesInPartitions(IndexDescriptor labelIndex, List<Integer> labels) throws Exception {
+
+		var read = kernelTransaction.dataRead();
+		var cursorContext = kernelTransaction.cursorContext();
+		var desiredNumberOfPartitions = workers.parallelism() * PARTITIONS_PER_WORKER;
+		var interrupted = new AtomicBoolean();
+
+		List<Map<LabelSet, PropertyStatistics>> statisticsPerWorker;
+		if (labelIndex != null) {
+			var session = read.tokenReadSession(labelIndex);
+			var scans = new ArrayList<PartitionedScan<NodeLabelIndexCursor>>(labels.size());
+			for (int label : labels) {
+				scans.add(read.nodeLabelScan(session, desiredNumberOfPartitions, cursorContext, new TokenPredicate(label)));
+			}
+			statisticsPerWorker = workers.runOnEachWorker(executionContext -> {
+				var statisticsByLabels = new HashMap<LabelSet, PropertyStatistics>();
+				var workerCursors = executionContext.cursors();
+				var workerCursorContext = executionContext.cursorContext();
+				try (
+					var labelIndexCursor = workerCursors.allocateNodeLabelIndexCursor(workerCursorContext);
+					var nodeCursor = workerCursors.allocateNodeCursor(workerCursorContext);
+					var propertyCursor = workerCursors.allocatePropertyCursor(workerCursorContext, executionContext.memoryTracker())
+				) {
+					for (int i = 0; i < labels.size(); ++i) {
+						var scan = scans.get(i);
+						while (!interrupted.get() && scan.reservePartition(labelIndexCursor, workerCursorContext, executionContext.securityContext().mode())) {
+							if (!collect(labels.get(i), labelIndexCursor, executionContext.dataRead(), nodeCursor, propertyCursor, statisticsByLabels)) {
+								interrupted.set(true);
+							}
+						}
+					}
+				}
+				return statisticsByLabels;
+			});
+		} else {
+			var scan = read.allNodesScan(desiredNumberOfPartitions, cursorContext);
+			statisticsPerWorker = workers.runOnEachWorker(executionContext -> {
+				var statisticsByLabels = new HashMap<LabelSet, PropertyStatistics>();
+				var workerCursors = executionContext.cursors();
+				var workerCursorContext = executionContext.cursorContext();
+				try (
+					var nodeCursor = workerCursors.allocateNodeCursor(workerCursorContext);
+					var propertyCursor = workerCursors.allocatePropertyCursor(workerCursorContext, executionContext.memoryTracker())
+				) {
+					while (!interrupted.get() && scan.reservePartition(nodeCursor, workerCursorContext, executionContext.securityContext().mode())) {
+						if (!collect(nodeCursor, propertyCursor, statisticsByLabels)) {
+							interrupted.set(true);
+						}
+					}
+				}
+				return statisticsByLabels;
+			});
+		}
+
+		// Partitions are not aligned with labels, so no label is known to be complete
+		if (interrupted.get()) {
+			markUnexplored(labels, unexploredLabels, kernelTransaction.tokenRead()::labelGetName);
+		}
+		memory.reconcile();
+		var result = new HashMap<LabelSet, PropertyStatistics>();
+		for (var statisticsByLabels : statisticsPerWorker) {
+			statisticsByLabels.forEach((labelSet, statistics) -> result.merge(labelSet, statistics, PropertyStatistics::merge));
+		}
+		return result;
+	}
+
+	/**
+	 * Samples nodes by probing random ids up to the highest id possibly in use. Probing stops as soon as the samples of
+	 * all labels are complete or after {@link #PROBES_PER_SAMPLE} probes per wanted sample. Labels still lacking samples
+	 * after that, usually rare ones, are topped up from the label lookup index, if available. The top-up takes the
+	 * first nodes in the order of the index, that is those with the lowest ids, so that the samples of rare labels are
+	 * biased towards old nodes, the same way as with {@link SamplingStrategy#FIRST_N}.
+	 *
+	 * @param highestId  The highest node id possibly in use
+	 * @param labels     The ids of the labels in use
+	 * @param labelIndex The label lookup index
+	 * @param sampleSize The number of nodes to be sampled per label
+	 * @return The statistics by label set
+	 * @throws Exception Any exception that might occur
+	 */
+	private Map<LabelSet, PropertyStatistics> probeNodes(long highestId, List<Integer> labels, Optional<IndexDescriptor> labelIndex, long sampleSize) throws Exception {
+
+		var read = kernelTransaction.dataRead();
+		var cursors = kernelTransaction.cursors();
+		var cursorContext = kernelTransaction.cursorContext();
+
+		var statisticsByLabels = new HashMap<LabelSet, PropertyStatistics>();
+		var convergenceByLabel = new HashMap<Integer, Convergence>();
+		labels.forEach(label -> convergenceByLabel.put(label, new Convergence(sampleSize, getConvergenceWindow(config))));
+		var pending = labels.size();
+		var sampledNodes = new HashSet<Long>();
+		var wanted = new ArrayList<Convergence>();
+		var random = newRandom("nodes");
+		try (
+			var nodeCursor = cursors.allocateNodeCursor(cursorContext);
+			var propertyCursor = cursors.allocatePropertyCursor(cursorContext, kernelTransaction.memoryTracker())
+		) {
+			for (long probes = getNumberOfProbes(sampleSize, labels.size()); pending > 0 && probes > 0 && !shouldStop(); --probes) {
+				var node = random.nextLong(highestId + 1);
+				read.singleNode(node, nodeCursor);
+				if (!nodeCursor.next() || !nodeCursor.hasLabel() || !sampledNodes.add(node)) {
+					continue;
+				}
+				memory.allocate(MemoryBudget.ID);
+				wanted.clear();
+				var nodeLabels = nodeCursor.labels();
+				for (int i = 0; i < nodeLabels.numberOfTokens(); ++i) {
+					var convergence = convergenceByLabel.get(nodeLabels.token(i));
+					if (convergence != null && !convergence.isComplete()) {
+						wanted.add(convergence);
+					}
+				}
+				if (!wanted.isEmpty()) {
+					var news = add(nodeCursor, propertyCursor, statisticsByLabels);
+					for (var convergence : wanted) {
+						pending -= convergence.add(news) ? 1 : 0;
+					}
+				}
+			}
+
+			if (pending > 0 && labelIndex.isPresent()) {
+				var session = read.tokenReadSession(labelIndex.get());
+				try (var labelIndexCursor = cursors.allocateNodeLabelIndexCursor(cursorContext)) {
+					for (int label : labels) {
+						var convergence = convergenceByLabel.get(label);
+						if (!convergence.isComplete()) {
+							read.nodeLabelScan(session, labelIndexCursor, IndexQueryConstraints.unconstrained(), new TokenPredicate(label), cursorContext);
+							if (!sample(convergence, sampledNodes, labelIndexCursor, read, nodeCursor, propertyCursor, statisticsByLabels)) {
+								unexploredLabels.add(kernelTransaction.tokenRead().labelGetName(label));
+							}
+						}
+					}
+				}
+			} else if (pending > 0 && shouldStop()) {
+				markUnexplored(labels.stream().filter(label -> !convergenceByLabel.get(label).isComplete()).toList(), unexploredLabels, kernelTransaction.tokenRead()::labelGetName);
+			}
+		}
+		var tokenRead = kernelTransaction.tokenRead();
+		convergenceByLabel.forEach((label, convergence) -> samplesByLabel.put(tokenRead.labelGetName(label), convergence.samples()));
+		return statisticsByLabels;
+	}
+
+	/**
+	 * {@return the number of random ids to probe at most for sampling the given number of strata}
+	 * @param sampleSize The number of samples per stratum
+	 * @param strata     The number of labels or relationship types
+	 */
+	private static long getNumberOfProbes(long sampleSize, int strata) {
+		var samples = sampleSize > Long.MAX_VALUE / Math.max(1, strata) ? Long.MAX_VALUE : sampleSize * strata;
+		return samples > Long.MAX_VALUE / PROBES_PER_SAMPLE ? Long.MAX_VALUE : samples * PROBES_PER_SAMPLE;
+	}
+
+	/**
+	 * {@return the highest id possibly in use for the given type of records, empty if the store has no such ids} The
+	 * ids are those of the record storage engine, other storage engines might not provide them at all.
+	 * @param idType The type of the records
+	 */
+	private OptionalLong getHighestPossibleIdInUse(IdType idType) {
+		IdGenerator idGenerator;
+		try {
+			idGenerator = ((GraphDatabaseAPI) databaseService).getDependencyResolver().resolveDependency(IdGeneratorFactory.class).get(idType);
+		} catch (UnsatisfiedDependencyException e) {
+			return OptionalLong.empty();
+		}
+		return idGenerator == null ? OptionalLong.empty() : OptionalLong.of(idGenerator.getHighestPossibleIdInUse());
+	}
+
+	/**
+	 * Marks the given tokens as unexplored.
+	 */
+	private static void markUnexplored(List<Integer> tokens, Set<String> unexplored, IntFunction<String> nameOf) {
+		for (int token : tokens) {
+			unexplored.add(nameOf.apply(token));
+		}
+	}
+
+	/**
+	 * Collects the statistics of all nodes returned by the label index cursor having the given label as their lowest label
+	 * to scan.
+	 *
+	 * @return {@literal true} if all nodes have been looked at before the deadline expired
+	 */
+	private boolean collect(int label, NodeLabelIndexCursor labelIndexCursor, Read read, NodeCursor nodeCursor, PropertyCursor propertyCursor, Map<LabelSet, PropertyStatistics> statisticsByLabels) {
+
+		while (labelIndexCursor.next()) {
+			if (shouldStop()) {
+				return false;
+			}
+			read.singleNode(labelIndexCursor.nodeReference(), nodeCursor);
+			// Nodes with multiple labels are only looked at from their lowest label
+			if (nodeCursor.next() && lowestToScan(nodeCursor.labels()) == label) {
+				add(nodeCursor, propertyCursor, statisticsByLabels);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Collects the statistics of the nodes returned by the label index cursor until the sample is complete. Nodes with
+	 * multiple labels are only added once, when they are first sampled through any of their labels.
+	 *
+	 * @return {@literal true} if the sample is complete or all nodes have been looked at before the deadline expired
+	 */
+	private boolean sample(Convergence convergence, Set<Long> sampledNodes, NodeLabelIndexCursor labelIndexCursor, Read read, NodeCursor nodeCursor, PropertyCursor propertyCursor, Map<LabelSet, PropertyStatistics> statisticsByLabels) {
+
+		while (!convergence.isComplete() && labelIndexCursor.next()) {
+			if (shouldStop()) {
+				return false;
+			}
+			var node = labelIndexCursor.nodeReference();
+			var news = false;
+			if (sampledNodes.add(node)) {
+				memory.allocate(MemoryBudget.ID);
+				read.singleNode(node, nodeCursor);
+				news = nodeCursor.next() && add(nodeCursor, propertyCursor, statisticsByLabels);
+			}
+			convergence.add(news);
+		}
+		return true;
+	}
+
+	/**
+	 * Collects the statistics of all nodes returned by the node cursor having a label to scan.
+	 *
+	 * @return {@literal true} if all nodes have been looked at before the deadline expired
+	 */
+	private boolean collect(NodeCursor nodeCursor, PropertyCursor propertyCursor, Map<LabelSet, PropertyStatistics> statisticsByLabels) {
+
+		while (nodeCursor.next()) {
+			if (shouldStop()) {
+				return false;
+			}
+			if (labelIdsToScan == null ? nodeCursor.hasLabel() : lowestToScan(nodeCursor.labels()) != Long.MAX_VALUE) {
+				add(nodeCursor, propertyCursor, statisticsByLabels);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the node the cursor is positioned at to the statistics of its label set, unless it has no label in scope.
+	 *
+	 * @return {@literal true} if the node brought up a new label set or a new property type for its label set
+	 */
+	private boolean add(NodeCursor nodeCursor, PropertyCursor propertyCursor, Map<LabelSet, PropertyStatistics> statisticsByLabels) {
+
+		var labelSet = labelSetOf(nodeCursor.labels());
+		if (labelSet.ids().length == 0) {
+			return false;
+		}
+		var statistics = statisticsByLabels.get(labelSet);
+		var news = statistics == null;
+		if (news) {
+			memory.allocate(MemoryBudget.ENTRY + HeapEstimator.sizeOf(labelSet.ids()));
+			statistics = newPropertyStatistics();
+			statisticsByLabels.put(labelSet, statistics);
+		}
+		var numberOfPropertyTypes = statistics.numberOfPropertyTypes();
+		statistics.add(nodeCursor, propertyCursor);
+		var newPropertyTypes = statistics.numberOfPropertyTypes() - numberOfPropertyTypes;
+		if (newPropertyTypes > 0) {
+			memory.allocate(MemoryBudget.PROPERTY_TYPE * newPropertyTypes);
+		}
+		return news || newPropertyTypes > 0;
+	}
+
+	@Override
+	Map<String, List<RelationshipTypeProperty>> getRelationshipTypeProperties(Transaction tx) throws Exception {
+
+		var ktx = kernelTransaction(tx);
+		var read = ktx.dataRead();
+		var tokenRead = ktx.tokenRead();
+
+		var sampleSize = getSampleSize(config);
+		var typeIndex = findTokenIndex(ktx, EntityType.RELATIONSHIP);
+		var types = new ArrayList<Integer>();
+		var typesInScope = new IntHashSet();
+		var allTypes = tokenRead.relationshipTypesGetAllTokens();
+		while (allTypes.hasNext()) {
+			var type = allTypes.next();
+			if (config.typeFilter().test(type.name()) && read.countsForRelationship(TokenRead.ANY_LABEL, type.id(), TokenRead.ANY_LABEL) > 0) {
+				types.add(type.id());
+				typesInScope.add(type.id());
+			}
+		}
+
+		var highestRelationshipId = sampleSize != Long.MAX_VALUE && config.samplingStrategy() == SamplingStrategy.RANDOM_IDS ? getHighestPossibleIdInUse(RecordIdType.RELATIONSHIP) : OptionalLong.empty();
+		// Without ids to probe, a uniform sample is taken from the relationships walked instead of the first ones
+		var samplingStrategy = sampleSize != Long.MAX_VALUE && config.samplingStrategy() == SamplingStrategy.RANDOM_IDS && highestRelationshipId.isEmpty() ? SamplingStrategy.RESERVOIR : config.samplingStrategy();
+		var scansByType = new HashMap<Integer, RelationshipTypeScan>();
+		if (highestRelationshipId.isPresent()) {
+			scansByType.putAll(probeRelationships(ktx, highestRelationshipId.getAsLong(), types, typeIndex, sampleSize));
+		} else if (typeIndex.isPresent()) {
+			var scans = workers.map(tx, types, (workerTransaction, type) -> scanRelationshipType(kernelTransaction(workerTransaction), typeIndex.get(), type, sampleSize, samplingStrategy));
+			for (int i = 0; i < types.size(); ++i) {
+				scansByType.put(types.get(i), scans.get(i));
+			}
+		} else {
+			var cursors = ktx.cursors();
+			var cursorContext = ktx.cursorContext();
+			try (
+				var relationshipCursor = cursors.allocateRelationshipScanCursor(cursorContext);
+				var nodeCursor = cursors.allocateNodeCursor(cursorContext);
+				var propertyCursor = cursors.allocatePropertyCursor(cursorContext, ktx.memoryTracker())
+			) {
+				read.allRelationshipsScan(relationshipCursor);
+				while (relationshipCursor.next()) {
+					if (shouldStop()) {
+						markUnexplored(types.stream().filter(type -> !scansByType.containsKey(type) || !scansByType.get(type).isComplete()).toList(), unexploredTypes, tokenRead::relationshipTypeGetName);
+						break;
+					}
+					if (!typesInScope.contains(relationshipCursor.type())) {
+						continue;
+					}
+					var scan = scansByType.computeIfAbsent(relationshipCursor.type(), type -> newRelationshipTypeScan(ktx, type, sampleSize, samplingStrategy));
+					if (!scan.isComplete()) {
+						scan.add(relationshipCursor, nodeCursor, propertyCursor);
+					}
+				}
+			}
+		}
+
+		if (sampleSize != Long.MAX_VALUE) {
+			scansByType.forEach((type, scan) -> samplesByType.put(tokenRead.relationshipTypeGetName(type), scan.samples()));
+		}
+
+		var relationshipTypeProperties = new TreeMap<String, List<RelationshipTypeProperty>>();
+		for (var entry : scansByType.entrySet()) {
+			relationshipTypeProperties.put(tokenRead.relationshipTypeGetName(entry.getKey()), entry.getValue().toRelationshipTypeProperties(tokenRead));
+		}
+		return relationshipTypeProperties;
+	}
+
+	/**
+	 * Samples relationships by probing random ids up to the highest id possibly in use, the same way as
+	 * {@link #probeNodes(long, List, Optional, long)} does for nodes, with relationship types as strata, including the
+	 * bias of the top-up of rare types towards old relationships.
+	 *
+	 * @param ktx        The transaction to probe the relationships in
+	 * @param highestId  The highest relationship id possibly in use
+	 * @param types      The ids of the relationship types in use
+	 * @param typeIndex  The relationship type lookup index
+	 * @param sampleSize The number of relationships to be sampled per type
+	 * @return The scans by relationship type
+	 * @throws Exception Any exception that might occur
+	 */
+	private Map<Integer, RelationshipTypeScan> probeRelationships(KernelTransaction ktx, long highestId, List<Integer> types, Optional<IndexDescriptor> typeIndex, long sampleSize) throws Exception {
+
+		var read = ktx.dataRead();
+		var cursors = ktx.cursors();
+		var cursorContext = ktx.cursorContext();
+
+		var scansByType = new HashMap<Integer, RelationshipTypeScan>();
+		var samplesById = new HashMap<Integer, Long>();
+		types.forEach(type -> samplesById.put(type, 0L));
+		var pending = types.size();
+		var sampledRelationships = new HashSet<Long>();
+		var random = newRandom("relationships");
+		try (
+			var relationshipCursor = cursors.allocateRelationshipScanCursor(cursorContext);
+			var nodeCursor = cursors.allocateNodeCursor(cursorContext);
+			var propertyCursor = cursors.allocatePropertyCursor(cursorContext, ktx.memoryTracker())
+		) {
+			for (long probes = getNumberOfProbes(sampleSize, types.size()); pending > 0 && probes > 0 && !shouldStop(); --probes) {
+				var relationship = random.nextLong(highestId + 1);
+				read.singleRelationship(relationship, relationshipCursor);
+				if (!relationshipCursor.next() || !sampledRelationships.add(relationship)) {
+					continue;
+				}
+				memory.allocate(MemoryBudget.ID);
+				var type = relationshipCursor.type();
+				var samples = samplesById.get(type);
+				if (samples == null || samples == sampleSize) {
+					continue;
+				}
+				var scan = scansByType.computeIfAbsent(type, ignored -> newRelationshipTypeScan(ktx, type, sampleSize, SamplingStrategy.RANDOM_IDS));
+				if (scan.isComplete()) {
+					continue;
+				}
+				samplesById.put(type, ++samples);
+				pending -= scan.add(relationshipCursor, nodeCursor, propertyCursor) || samples == sampleSize ? 1 : 0;
+			}
+
+			if (pending > 0 && typeIndex.isPresent()) {
+				var session = read.tokenReadSession(typeIndex.get());
+				try (var typeIndexCursor = cursors.allocateRelationshipTypeIndexCursor(cursorContext)) {
+					for (int type : types) {
+						var samples = samplesById.get(type);
+						var scan = scansByType.computeIfAbsent(type, ignored -> newRelationshipTypeScan(ktx, type, sampleSize, SamplingStrategy.RANDOM_IDS));
+						if (samples >= sampleSize || scan.isComplete()) {
+							continue;
+						}
+						read.relationshipTypeScan(session, typeIndexCursor, IndexQueryConstraints.unconstrained(), new TokenPredicate(type), cursorContext);
+						for (long i = samples; i < sampleSize && !scan.isComplete() && typeIndexCursor.next(); ++i) {
+							if (shouldStop()) {
+								unexploredTypes.add(ktx.tokenRead().relationshipTypeGetName(type));
+								break;
+							}
+							var relationship = typeIndexCursor.relationshipReference();
+							if (sampledRelationships.add(relationship)) {
+								memory.allocate(MemoryBudget.ID);
+								read.singleRelationship(relationship, relationshipCursor);
+								if (relationshipCursor.next()) {
+									scan.add(relationshipCursor, nodeCursor, propertyCursor);
+								}
+							}
+						}
+					}
+				}
+			} else if (pending > 0 && shouldStop()) {
+				markUnexplored(types.stream().filter(type -> samplesById.get(type) < sampleSize && (!scansByType.containsKey(type) || !scansByType.get(type).isComplete())).toList(), unexploredTypes, ktx.tokenRead()::relationshipTypeGetName);
+			}
+		}
+		return scansByType;
+	}
+
+	/**
+	 * Walks the relationships of one type through the relationship type lookup index, marking the type as unexplored if
+	 * the deadline expires before all relationships needed have been looked at.
+	 *
+	 * @param ktx        The transaction to walk the relationships in
+	 * @param typeIndex  The relationship type lookup index
+	 * @param type       The id of the relationship type
+	 * @param sampleSize       The number of relationships to be looked at per property
+	 * @param samplingStrategy The strategy for sampling the relationships having a property
+	 * @return The completed scan
+	 * @throws Exception Any exception that might occur
+	 */
+	private RelationshipTypeScan scanRelationshipType(KernelTransaction ktx, IndexDescriptor typeIndex, int type, long sampleSize, SamplingStrategy samplingStrategy) throws Exception {
+
+		var read = ktx.dataRead();
+		var cursors = ktx.cursors();
+		var cursorContext = ktx.cursorContext();
+
+		var scan = newRelationshipTypeScan(ktx, type, sampleSize, samplingStrategy);
+		try (
+			var typeIndexCursor = cursors.allocateRelationshipTypeIndexCursor(cursorContext);
+			var relationshipCursor = cursors.allocateRelationshipScanCursor(cursorContext);
+			var nodeCursor = cursors.allocateNodeCursor(cursorContext);
+			var propertyCursor = cursors.allocatePropertyCursor(cursorContext, ktx.memoryTracker())
+		) {
+			read.relationshipTypeScan(read.tokenReadSession(typeIndex), typeIndexCursor, IndexQueryConstraints.unconstrained(), new TokenPredicate(type), cursorContext);
+			while (!scan.isComplete() && typeIndexCursor.next()) {
+				if (shouldStop()) {
+					unexploredTypes.add(ktx.tokenRead().relationshipTypeGetName(type));
+					break;
+				}
+				read.singleRelationship(typeIndexCursor.relationshipReference(), relationshipCursor);
+				if (relationshipCursor.next()) {
+					scan.add(relationshipCursor, nodeCursor, propertyCursor);
+				}
+			}
+		}
+		return scan;
+	}
+
+	private RelationshipTypeScan newRelationshipTypeScan(KernelTransaction ktx, int type, long sampleSize, SamplingStrategy samplingStrategy) {
+
+		var knownEndpoints = config.useCountStore() && allNodesScanned ? getEndpointsFromCountStore(ktx, type).orElse(null) : null;
+		return new RelationshipTypeScan(ktx, type, sampleSize, samplingStrategy, knownEndpoints);
+	}
+
+	/**
+	 * Derives the endpoints of all relationships of one type from the count store, without looking at a single
+	 * relationship. The count store keeps the number of relationships per type with either the start or the end label
+	 * known, but not with both of them. Hence, the endpoints can be derived if:
+	 * <ul>
+	 *     <li>each label set has at least one label that is not part of any other label set, so that its count identifies the label set,</li>
+	 *     <li>all start and end nodes are covered by those label sets, which rules out nodes without labels and</li>
+	 *     <li>the relationships either start or end at a single label set, in which case the endpoints are all combinations of start and end.</li>
+	 * </ul>
+	 * This relies on the label sets of all nodes, hence it is only used if the node phase has looked at all of them.
+	 *
+	 * @param ktx  The transaction to read the counts in
+	 * @param type The id of the relationship type
+	 * @return The endpoints of all relationships of the given type or an empty optional if those need to be sampled
+	 */
+	private Optional<Set<Endpoints>> getEndpointsFromCountStore(KernelTransaction ktx, int type) {
+
+		var read = ktx.dataRead();
+		var tokenRead = ktx.tokenRead();
+		var total = read.countsForRelationship(TokenRead.ANY_LABEL, type, TokenRead.ANY_LABEL);
+
+		var labelSetsByLabel = new HashMap<Long, Integer>();
+		for (var labelSet : labelSets) {
+			for (long label : labelSet.ids()) {
+				labelSetsByLabel.merge(label, 1, Integer::sum);
+			}
+		}
+
+		var starts = new ArrayList<String>();
+		var ends = new ArrayList<String>();
+		long outgoingTotal = 0;
+		long incomingTotal = 0;
+		for (var labelSet : labelSets) {
+			var label = Arrays.stream(labelSet.ids()).filter(id -> labelSetsByLabel.get(id) == 1).findFirst();
+			if (label.isEmpty()) {
+				continue;
+			}
+			var outgoing = read.countsForRelationship((int) label.getAsLong(), type, TokenRead.ANY_LABEL);
+			if (outgoing > 0) {
+				starts.add(getNodeType(labelSet, tokenRead));
+				outgoingTotal += outgoing;
+			}
+			var incoming = read.countsForRelationship(TokenRead.ANY_LABEL, type, (int) label.getAsLong());
+			if (incoming > 0) {
+				ends.add(getNodeType(labelSet, tokenRead));
+				incomingTotal += incoming;
+			}
+		}
+
+		if (outgoingTotal != total || incomingTotal != total || starts.size() > 1 && ends.size() > 1) {
+			return Optional.empty();
+		}
+
+		var endpoints = new LinkedHashSet<Endpoints>();
+		for (var from : starts) {
+			for (var to : ends) {
+				endpoints.add(new Endpoints(from, to));
+			}
+		}
+		return Optional.of(endpoints);
+	}
+
+	private static Optional<IndexDescriptor> findTokenIndex(KernelTransaction ktx, EntityType entityType) throws Exception {
+
+		var schemaRead = ktx.schemaRead();
+		var indexes = schemaRead.index(SchemaDescriptors.forAnyEntityTokens(entityType));
+		while (indexes.hasNext()) {
+			var index = indexes.next();
+			if (schemaRead.indexGetState(index) == InternalIndexState.ONLINE) {
+				return Optional.of(index);
+			}
+		}
+		return Optional.empty();
+	}
+
+	private String getNodeType(LabelSet labelSet, TokenRead tokenRead) {
+		return nodeTypes.computeIfAbsent(labelSet, key -> {
+			var nodeType = toNodeType(key.names(tokenRead));
+			memory.allocate(MemoryBudget.ENTRY + HeapEstimator.sizeOf(key.ids()) + MemoryBudget.sizeOf(nodeType));
+			return nodeType;
+		});
+	}
+
+	private boolean isInScope(int label) {
+		return labelsInScope == null || labelsInScope.contains(label);
+	}
+
+	private long lowestToScan(TokenSet tokens) {
+		long result = Long.MAX_VALUE;
+		for (int i = 0; i < tokens.numberOfTokens(); ++i) {
+			if (labelIdsToScan == null || labelIdsToScan.contains(tokens.token(i))) {
+				result = Math.min(result, tokens.token(i));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * {@return the label set formed by the labels in scope}
+	 * @param tokens The labels of a node
+	 */
+	private LabelSet labelSetOf(TokenSet tokens) {
+		var ids = tokens.all();
+		if (labelsInScope != null) {
+			ids = Arrays.stream(ids).filter(id -> labelsInScope.contains((int) id)).toArray();
+		}
+		Arrays.sort(ids);
+		return new LabelSet(ids);
+	}
+
+	/**
+	 * The sorted ids of the labels of a node.
+	 *
+	 * @param ids The label ids
+	 */
+	private record LabelSet(long[] ids) {
+
+		List<String> names(TokenRead tokenRead) {
+			var names = new ArrayList<String>(ids.length);
+			for (long id : ids) {
+				names.add(tokenRead.labelGetName((int) id));
+			}
+			names.sort(null);
+			return names;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return this == o || o instanceof LabelSet other && Arrays.equals(ids, other.ids);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(ids);
+		}
+
+		@Override
+		public String toString() {
+			return "LabelSet" + Arrays.toString(ids);
+		}
+	}
+
+	/**
+	 * A dictionary of label combinations, resolving the node type of a node with a single hash probe and without any
+	 * allocation, as needed for both endpoints of every sampled relationship. A combination of labels with ids below 64
+	 * is keyed by a bitset of those ids in a single {@code long}, which is also the id of that combination. Combinations
+	 * including any other label fall back to the {@link #nodeTypes shared node types} by label set. Labels out of scope
+	 * are skipped. Not thread safe.
+	 */
+	private final class NodeTypeDictionary {
+
+		private final LongObjectHashMap<String> nodeTypesByBitset = new LongObjectHashMap<>();
+
+		String get(TokenSet labels, TokenRead tokenRead) {
+			long bitset = 0;
+			for (int i = 0; i < labels.numberOfTokens(); ++i) {
+				var label = labels.token(i);
+				if (!isInScope(label)) {
+					continue;
+				}
+				if (label >= Long.SIZE) {
+					return getNodeType(labelSetOf(labels), tokenRead);
+				}
+				bitset |= 1L << label;
+			}
+			var nodeType = nodeTypesByBitset.get(bitset);
+			if (nodeType == null) {
+				nodeType = getNodeType(labelSetOf(labels), tokenRead);
+				memory.allocate(MemoryBudget.ID);
+				nodeTypesByBitset.put(bitset, nodeType);
+			}
+			return nodeType;
+		}
+	}
+
+	/**
+	 * Collects the properties and the endpoints of all relationships of one type. The endpoints of a relationship are
+	 * only resolved as long as they are needed for one of its properties. If the endpoints of all relationships are
+	 * already known, they are only resolved when needed for attributing properties to more than one endpoint. Not thread
+	 * safe.
+	 */
+	private final class RelationshipTypeScan {
+
+		private final KernelTransaction ktx;
+		private final PropertyStatistics statistics = newPropertyStatistics();
+		private final RelationshipScan<Integer> scan;
+		private final Convergence convergence = new Convergence(Long.MAX_VALUE, getConvergenceWindow(config));
+		private final int maxRelationshipsPerNode = config.sampleOnly() ? config.maxRelationshipsPerNode() : 0;
+
+		/**
+		 * The number of relationships still to be admitted by start node, only tracked for hubs.
+		 */
+		private final Map<Long, Integer> remainingByHub = new HashMap<>();
+
+		/**
+		 * The start nodes known not to be hubs, so that their degree is looked up only once per scan.
+		 */
+		private final LongHashSet nonHubs = new LongHashSet();
+
+		/**
+		 * The endpoints of all relationships of this type, {@literal null} if unknown.
+		 */
+		private final Set<Endpoints> knownEndpoints;
+
+		/**
+		 * Resolves the node types of the endpoints.
+		 */
+		private final NodeTypeDictionary nodeTypeDictionary = new NodeTypeDictionary();
+
+		RelationshipTypeScan(KernelTransaction ktx, int type, long sampleSize, SamplingStrategy samplingStrategy, Set<Endpoints> knownEndpoints) {
+			this.ktx = ktx;
+			this.scan = RelationshipScan.open(samplingStrategy, sampleSize, key -> newRandom(type, key));
+			this.knownEndpoints = knownEndpoints;
+		}
+
+		/**
+		 * Adds a single relationship.
+		 *
+		 * @return {@literal true} if no further relationships are needed, because the relationships added have converged
+		 */
+		boolean add(RelationshipScanCursor relationshipCursor, NodeCursor nodeCursor, PropertyCursor propertyCursor) {
+
+			var admitted = maxRelationshipsPerNode == 0 || admit(relationshipCursor, nodeCursor);
+			var numberOfPropertyTypes = statistics.numberOfPropertyTypes();
+			var keys = statistics.add(relationshipCursor, propertyCursor);
+			var newPropertyTypes = statistics.numberOfPropertyTypes() - numberOfPropertyTypes;
+			if (newPropertyTypes > 0) {
+				memory.allocate(MemoryBudget.PROPERTY_TYPE * newPropertyTypes);
+			} else if (!admitted) {
+				return convergence.isComplete();
+			}
+			var news = newPropertyTypes > 0;
+			if (knownEndpoints == null || knownEndpoints.size() != 1) {
+				Supplier<Endpoints> endpoints = () -> new Endpoints(
+					getNodeType(relationshipCursor.sourceNodeReference(), nodeCursor),
+					getNodeType(relationshipCursor.targetNodeReference(), nodeCursor)
+				);
+				if (knownEndpoints == null ? scan.record(keys, endpoints) : scan.recordProperties(keys, endpoints)) {
+					memory.allocate(MemoryBudget.ENDPOINTS);
+					news = true;
+				}
+			}
+			return convergence.add(news);
+		}
+
+		/**
+		 * Decides whether the endpoints of a relationship are added to the sample and whether it counts towards the
+		 * convergence, admitting at most {@link #maxRelationshipsPerNode} relationships per hub. A start node is
+		 * recognized as hub through its degree for the type of this scan when seen first, which is a constant time lookup
+		 * for dense nodes and stops counting after the maximum for all others. The decision is remembered for every start
+		 * node seen, so that the degree is looked up once per start node and scan rather than once per relationship.
+		 * <p>
+		 * The properties of relationships not admitted are still counted, so that a property missing on the relationships
+		 * of a hub beyond the maximum is not taken as mandatory. Their endpoints are only recorded if they bring a new
+		 * property type, so that every property has endpoints.
+		 *
+		 * @return {@literal true} if the relationship is part of the sample
+		 */
+		private boolean admit(RelationshipScanCursor relationshipCursor, NodeCursor nodeCursor) {
+
+			var start = relationshipCursor.sourceNodeReference();
+			if (nonHubs.contains(start)) {
+				return true;
+			}
+			var remaining = remainingByHub.get(start);
+			if (remaining == null) {
+				ktx.dataRead().singleNode(start, nodeCursor);
+				var selection = RelationshipSelection.selection(relationshipCursor.type(), Direction.OUTGOING);
+				var maxDegree = (int) Math.min(Integer.MAX_VALUE, maxRelationshipsPerNode + 1L);
+				memory.allocate(MemoryBudget.ID);
+				if (!nodeCursor.next() || nodeCursor.degreeWithMax(maxDegree, selection) <= maxRelationshipsPerNode) {
+					nonHubs.add(start);
+					return true;
+				}
+				remaining = maxRelationshipsPerNode;
+			}
+			if (remaining == 0) {
+				return false;
+			}
+			remainingByHub.put(start, remaining - 1);
+			return true;
+		}
+
+		boolean isComplete() {
+			return convergence.isComplete();
+		}
+
+		long samples() {
+			return convergence.samples();
+		}
+
+		private String getNodeType(long node, NodeCursor nodeCursor) {
+			ktx.dataRead().singleNode(node, nodeCursor);
+			return nodeCursor.next() ? nodeTypeDictionary.get(nodeCursor.labels(), ktx.tokenRead()) : UNLABELED;
+		}
+
+		private Set<Endpoints> getEndpoints(Integer key) {
+			if (knownEndpoints != null && (key == null || knownEndpoints.size() == 1)) {
+				return knownEndpoints;
+			}
+			return scan.getEndpoints(key);
+		}
+
+		List<RelationshipTypeProperty> toRelationshipTypeProperties(TokenRead tokenRead) {
+			var properties = statistics.toPropertiesByKey(tokenRead::propertyKeyGetName);
+			if (properties.isEmpty()) {
+				return List.of(new RelationshipTypeProperty(Optional.empty(), getEndpoints(null)));
+			}
+			var result = new ArrayList<RelationshipTypeProperty>(properties.size());
+			properties.forEach((key, property) -> result.add(new RelationshipTypeProperty(Optional.of(property), getEndpoints(key))));
+			return result;
+		}
+	}
+}
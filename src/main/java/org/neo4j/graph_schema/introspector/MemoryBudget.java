@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2023 "Neo4j,"
+ * Neo4j Sweden AB [https://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.graph_schema.introspector;
+
+import java.util.Collection;
+
+import org.neo4j.kernel.api.exceptions.Status;
+import org.neo4j.memory.HeapEstimator;
+import org.neo4j.memory.MemoryLimitExceededException;
+import org.neo4j.memory.MemoryTracker;
+
+/**
+ * Accounts the heap taken by the intermediate results of one introspection, such as the statistics per label
+ * combination and the sampled endpoints per relationship type, to the memory tracker of the calling transaction. That
+ * makes them subject to Neo4j's transaction and global memory pools, and visible to {@code SHOW TRANSACTIONS}. An
+ * optional limit of its own fails the introspection before it takes more than that. All sizes are estimates. Thread
+ * safe, so that the workers can allocate from the same budget. The memory tracker of a transaction however must only be
+ * used by the thread owning the transaction, so allocations of other threads are forwarded to it with the next
+ * allocation of the owning thread, and at the latest when the owning thread {@link #reconcile() reconciles} the budget
+ * after joining the workers.
+ */
+final class MemoryBudget implements AutoCloseable {
+
+	/**
+	 * The estimated size of an entry in a hash based map or set, not including key and value.
+	 */
+	static final long ENTRY = HeapEstimator.HASH_MAP_NODE_SHALLOW_SIZE;
+
+	/**
+	 * The estimated size of a node or relationship id in a hash based set.
+	 */
+	static final long ID = ENTRY + HeapEstimator.sizeOf(0L);
+
+	/**
+	 * The estimated size of a property type in {@link PropertyStatistics}, including its share of the set of types.
+	 */
+	static final long PROPERTY_TYPE = 2 * ENTRY + HeapEstimator.sizeOf(0L);
+
+	/**
+	 * The estimated size of the {@link ValueStatistics statistics of the values} of a property in {@link PropertyStatistics}.
+	 */
+	static final long VALUE_STATISTICS = ENTRY + ValueStatistics.SIZE;
+
+	/**
+	 * The estimated size of sampled endpoints, not including the node types, which are shared.
+	 */
+	static final long ENDPOINTS = ENTRY + HeapEstimator.alignObjectSize(HeapEstimator.OBJECT_HEADER_BYTES + 2L * HeapEstimator.OBJECT_REFERENCE_BYTES);
+
+	/**
+	 * {@return the estimated size of a string}
+	 * @param value A string
+	 */
+	static long sizeOf(String value) {
+		return HeapEstimator.sizeOf(value);
+	}
+
+	/**
+	 * {@return the estimated size of a list of strings, including the strings}
+	 * @param values Some strings
+	 */
+	static long sizeOf(Collection<String> values) {
+		long size = HeapEstimator.shallowSizeOfObjectArray(values.size());
+		for (var value : values) {
+			size += sizeOf(value);
+		}
+		return size;
+	}
+
+	private final MemoryTracker memoryTracker;
+	private final long limit;
+	private final Thread owner;
+	private long allocated;
+	private long forwarded;
+
+	/**
+	 * Creates a new budget, owned by the current thread.
+	 *
+	 * @param memoryTracker The memory tracker of the calling transaction
+	 * @param limit         The maximum number of bytes to be allocated, {@literal 0} for no limit besides those of Neo4j
+	 */
+	MemoryBudget(MemoryTracker memoryTracker, long limit) {
+		this.memoryTracker = memoryTracker;
+		this.limit = limit;
+		this.owner = Thread.currentThread();
+	}
+
+	/**
+	 * Accounts an allocation.
+	 *
+	 * @param bytes The estimated number of bytes allocated
+	 * @throws MemoryLimitExceededException If the allocation exceeds the limit of this budget or of the transaction
+	 */
+	synchronized void allocate(long bytes) {
+		if (limit > 0 && allocated + bytes > limit) {
+			throw new MemoryLimitExceededException(bytes, limit, allocated, Status.General.TransactionMemoryLimit, "maxMemoryBytes");
+		}
+		allocated += bytes;
+		try {
+			reconcile();
+		} catch (MemoryLimitExceededException e) {
+			allocated -= bytes;
+			throw e;
+		}
+	}
+
+	/**
+	 * Forwards the allocations of other threads to the memory tracker of the transaction, if called by the owning
+	 * thread. Must be called once the workers are done, before their results are merged.
+	 *
+	 * @throws MemoryLimitExceededException If the allocations exceed the limits of the transaction
+	 */
+	synchronized void reconcile() {
+		if (Thread.currentThread() != owner) {
+			return;
+		}
+		var pending = allocated - forwarded;
+		if (pending > 0) {
+			memoryTracker.allocateHeap(pending);
+			forwarded = allocated;
+		}
+	}
+
+	/**
+	 * {@return the number of bytes allocated so far}
+	 */
+	synchronized long allocated() {
+		return allocated;
+	}
+
+	/**
+	 * Releases everything forwarded to the memory tracker of the transaction, as the intermediate results are garbage
+	 * once the schema has been derived. Must be called by the owning thread.
+	 */
+	@Override
+	public synchronized void close() {
+		memoryTracker.releaseHeap(forwarded);
+		allocated = 0;
+		forwarded = 0;
+	}
+}
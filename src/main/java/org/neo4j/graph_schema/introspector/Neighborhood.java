@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2023 "Neo4j,"
+ * Neo4j Sweden AB [https://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.graph_schema.introspector;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+import org.neo4j.graph_schema.introspector.Introspect.Config;
+import org.neo4j.graph_schema.introspector.Introspect.Engine;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+
+/**
+ * Introspects the neighborhood of a label, that is the node object types within a number of hops around the node
+ * object types having that label and the relationship object types between them. The labels and relationship types
+ * that might be part of the neighborhood are explored hop by hop from the count store, without looking at a single node
+ * or relationship, and only those are introspected. The count store doesn't tell which start labels and end labels of
+ * a relationship type go together, so that it yields a superset of the neighborhood, which is
+ * {@link GraphSchema#around(String, int) pruned} to the exact neighborhood afterwards. The neighborhood is meant to
+ * be introspected with the {@link Engine#KERNEL kernel engine}, which the procedure always configures, as the builtin
+ * procedures of the Cypher engine read the properties of all labels and types, regardless of the scope.
+ */
+final class Neighborhood {
+
+	/**
+	 * The labels whose nodes might be part of the neighborhood and the relationship types that might connect them.
+	 *
+	 * @param labels The labels
+	 * @param types  The relationship types
+	 */
+	record Scope(Set<String> labels, Set<String> types) {
+	}
+
+	/**
+	 * Derives the schema of the neighborhood of a label.
+	 *
+	 * @param databaseService The database to introspect
+	 * @param transaction     The calling transaction
+	 * @param label           The label in the center of the neighborhood
+	 * @param depth           The number of hops from the center
+	 * @param config          The configuration of the introspection
+	 * @return The schema of the neighborhood
+	 * @throws Exception Any exception that might occur
+	 */
+	static GraphSchema introspect(GraphDatabaseService databaseService, Transaction transaction, String label, int depth, Config config) throws Exception {
+
+		if (depth < 0) {
+			throw new IllegalArgumentException("The depth must not be negative");
+		}
+		var scope = explore(((InternalTransaction) transaction).kernelTransaction(), label, depth, config);
+		var graphSchema = GraphSchema.build(databaseService, transaction, config.withTypeFilter(TokenFilter.only(scope.types())), TokenFilter.only(scope.labels()));
+		return graphSchema.around(label, depth);
+	}
+
+	/**
+	 * Explores the labels within the given number of hops around a label from the count store. A label is one hop away
+	 * from the labels of the frontier if a relationship type starts at any of the latter and ends at the former or the
+	 * other way round. Only labels and types in scope of the configuration are explored.
+	 *
+	 * @param ktx    The transaction to read the counts in
+	 * @param label  The label in the center of the neighborhood
+	 * @param depth  The number of hops from the center
+	 * @param config The configuration of the introspection
+	 * @return The labels and types that might be part of the neighborhood, both empty if the label is not in use
+	 */
+	static Scope explore(KernelTransaction ktx, String label, int depth, Config config) {
+
+		var read = ktx.dataRead();
+		var tokenRead = ktx.tokenRead();
+
+		var center = tokenRead.nodeLabel(label);
+		if (center == TokenRead.NO_TOKEN || !config.labelFilter().test(label) || read.countsForNode(center) == 0) {
+			return new Scope(Set.of(), Set.of());
+		}
+
+		var labelsInUse = new ArrayList<Integer>();
+		tokenRead.labelsGetAllTokens().forEachRemaining(token -> {
+			if (config.labelFilter().test(token.name()) && read.countsForNode(token.id()) > 0) {
+				labelsInUse.add(token.id());
+			}
+		});
+		var typesInUse = new ArrayList<Integer>();
+		tokenRead.relationshipTypesGetAllTokens().forEachRemaining(token -> {
+			if (config.typeFilter().test(token.name()) && read.countsForRelationship(TokenRead.ANY_LABEL, token.id(), TokenRead.ANY_LABEL) > 0) {
+				typesInUse.add(token.id());
+			}
+		});
+
+		var labels = new IntHashSet();
+		labels.add(center);
+		var types = new IntHashSet();
+		List<Integer> frontier = List.of(center);
+		// The types connecting the labels of the last hop with each other are needed as well, hence one more round
+		for (int hop = 0; !frontier.isEmpty(); ++hop) {
+			var next = new ArrayList<Integer>();
+			for (int type : typesInUse) {
+				var outgoing = frontier.stream().anyMatch(l -> read.countsForRelationship(l, type, TokenRead.ANY_LABEL) > 0);
+				var incoming = frontier.stream().anyMatch(l -> read.countsForRelationship(TokenRead.ANY_LABEL, type, l) > 0);
+				if (!outgoing && !incoming) {
+					continue;
+				}
+				for (int other : labelsInUse) {
+					var adjacent = outgoing && read.countsForRelationship(TokenRead.ANY_LABEL, type, other) > 0
+						|| incoming && read.countsForRelationship(other, type, TokenRead.ANY_LABEL) > 0;
+					if (adjacent && labels.contains(other)) {
+						types.add(type);
+					} else if (adjacent && hop < depth) {
+						types.add(type);
+						labels.add(other);
+						next.add(other);
+					}
+				}
+			}
+			frontier = next;
+		}
+
+		var labelNames = new HashSet<String>();
+		labels.each(id -> labelNames.add(tokenRead.labelGetName(id)));
+		var typeNames = new HashSet<String>();
+		types.each(id -> typeNames.add(tokenRead.relationshipTypeGetName(id)));
+		return new Scope(labelNames, typeNames);
+	}
+
+	private Neighborhood() {
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2023 "Neo4j,"
+ * Neo4j Sweden AB [https://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.graph_schema.introspector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+
+import org.neo4j.graph_schema.introspector.GraphSchema.Property;
+import org.neo4j.graph_schema.introspector.GraphSchema.Statistics;
+import org.neo4j.internal.kernel.api.EntityCursor;
+import org.neo4j.internal.kernel.api.PropertyCursor;
+import org.neo4j.values.storable.Value;
+
+/**
+ * Counts the entities of one object type, the properties present on them and the types of those properties, the
+ * same way {@code db.schema.nodeTypeProperties} and {@code db.schema.relTypeProperties} do. Properties are identified
+ * by an integer key, whose natural order is the order of the resulting properties. Optionally, the values of each
+ * property are accumulated into {@link ValueStatistics value statistics}. Not thread safe.
+ */
+final class PropertyStatistics {
+
+	private long entities;
+	private final Map<Integer, Long> counts = new TreeMap<>();
+	private final Map<Integer, Set<String>> types = new HashMap<>();
+	private long numberOfPropertyTypes;
+
+	/**
+	 * The budget for the value statistics, {@literal null} if values are not looked at.
+	 */
+	private final MemoryBudget valueMemory;
+	private final Map<Integer, ValueStatistics> values = new HashMap<>();
+
+	/**
+	 * Creates statistics of the property keys and types only.
+	 */
+	PropertyStatistics() {
+		this(null);
+	}
+
+	/**
+	 * Creates statistics that also accumulate the values of each property.
+	 *
+	 * @param valueMemory The budget for the value statistics, {@literal null} if values are not to be looked at
+	 */
+	PropertyStatistics(MemoryBudget valueMemory) {
+		this.valueMemory = valueMemory;
+	}
+
+	/**
+	 * Adds a single entity, its properties must be added via {@link #addProperty(int, String)} afterwards.
+	 */
+	void addEntity() {
+		++entities;
+	}
+
+	/**
+	 * Adds a property of the entity added last.
+	 *
+	 * @param key      The key of the property
+	 * @param typeName The name of the value type of the property
+	 */
+	void addProperty(int key, String typeName) {
+		counts.merge(key, 1L, Long::sum);
+		if (types.computeIfAbsent(key, ignored -> new HashSet<>()).add(typeName)) {
+			++numberOfPropertyTypes;
+		}
+	}
+
+	/**
+	 * Adds a property of the entity added last, including its value if values are looked at.
+	 *
+	 * @param key   The key of the property
+	 * @param value The value of the property
+	 */
+	void addProperty(int key, Value value) {
+		addProperty(key, value.getTypeName());
+		if (valueMemory != null) {
+			values.computeIfAbsent(key, ignored -> {
+				valueMemory.allocate(MemoryBudget.VALUE_STATISTICS);
+				return new ValueStatistics();
+			}).add(value);
+		}
+	}
+
+	/**
+	 * {@return the number of distinct combinations of property key and type seen so far}
+	 */
+	long numberOfPropertyTypes() {
+		return numberOfPropertyTypes;
+	}
+
+	/**
+	 * Adds a single entity read from the kernel, using the property key token ids as keys.
+	 *
+	 * @param entityCursor   A cursor positioned at the entity
+	 * @param propertyCursor A cursor to read the properties with
+	 * @return The keys of the properties present on the entity
+	 */
+	List<Integer> add(EntityCursor entityCursor, PropertyCursor propertyCursor) {
+		addEntity();
+		var keys = new ArrayList<Integer>();
+		entityCursor.properties(propertyCursor);
+		while (propertyCursor.next()) {
+			var key = propertyCursor.propertyKey();
+			addProperty(key, propertyCursor.propertyValue());
+			keys.add(key);
+		}
+		return keys;
+	}
+
+	/**
+	 * Merges the statistics of another set of entities of the same object type into this one.
+	 *
+	 * @param other The statistics to merge
+	 * @return This instance
+	 */
+	PropertyStatistics merge(PropertyStatistics other) {
+		entities += other.entities;
+		other.counts.forEach((key, count) -> counts.merge(key, count, Long::sum));
+		other.types.forEach((key, typeNames) -> types.computeIfAbsent(key, ignored -> new HashSet<>()).addAll(typeNames));
+		numberOfPropertyTypes = types.values().stream().mapToLong(Set::size).sum();
+		other.values.forEach((key, valueStatistics) -> values.merge(key, valueStatistics, ValueStatistics::merge));
+		return this;
+	}
+
+	/**
+	 * {@return the properties by their key, a property being mandatory if it is present on all entities}
+	 * @param propertyKeyName Resolves the name of a property key
+	 */
+	Map<Integer, Property> toPropertiesByKey(IntFunction<String> propertyKeyName) {
+		var properties = new LinkedHashMap<Integer, Property>();
+		for (var entry : counts.entrySet()) {
+			var key = entry.getKey();
+			properties.put(key, new Property(propertyKeyName.apply(key), GraphSchema.Introspector.toTypes(types.get(key)), entry.getValue() == entities, getStatistics(key)));
+		}
+		return properties;
+	}
+
+	/**
+	 * {@return the statistics of the values of a property, {@literal null} if its values have not been looked at}
+	 * @param key The key of the property
+	 */
+	Statistics getStatistics(int key) {
+		var valueStatistics = values.get(key);
+		return valueStatistics == null ? null : valueStatistics.toStatistics(counts.get(key));
+	}
+
+	List<Property> toProperties(IntFunction<String> propertyKeyName) {
+		return List.copyOf(toPropertiesByKey(propertyKeyName).values());
+	}
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2023 "Neo4j,"
+ * Neo4j Sweden AB [https://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.graph_schema.introspector;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+import org.neo4j.graph_schema.introspector.GraphSchema.Introspector.Endpoints;
+
+/**
+ * Decides which relationships are looked at for determining the endpoints of the relationships having a given property.
+ * A strategy creates one {@link Sampler sampler} per property (or per relationship type without any properties), which
+ * is offered all relationships having that property in the order they are walked. Strategies drawing random numbers
+ * do so from the generator passed to the sampler, so that seeding that generator makes them deterministic.
+ */
+interface SamplingStrategy {
+
+	/**
+	 * Takes the first relationships, so that walking the relationships can stop early. Fast, but biased towards old
+	 * relationships.
+	 */
+	SamplingStrategy FIRST_N = (sampleSize, random) -> new FirstN(sampleSize);
+
+	/**
+	 * Takes a uniform random sample of all relationships, see Vitter's Algorithm R. Requires walking all relationships,
+	 * but resolves the endpoints of selected relationships only.
+	 */
+	SamplingStrategy RESERVOIR = Reservoir::new;
+
+	/**
+	 * Takes the first relationships per start node type, so that the endpoints of each start node type are represented.
+	 * Requires walking all relationships and resolving the endpoints of all of them.
+	 */
+	SamplingStrategy STRATIFIED = (sampleSize, random) -> new StratifiedByStart(sampleSize);
+
+	/**
+	 * Probes uniformly distributed random ids of nodes and relationships instead of walking them in the order of the
+	 * store, which reaches new and old entities alike, with a number of probes independent of the size of the store.
+	 * The relationships probed are already a random sample, so the first ones are taken. Types rarely hit by the probes
+	 * are topped up with their first relationships in the order of the lookup index, which is biased towards old ones.
+	 * Probing requires the ids of the record storage engine, without them a {@link #RESERVOIR uniform sample} is taken
+	 * from all relationships instead. Only supported by the {@link Introspect.Engine#KERNEL kernel engine}.
+	 */
+	SamplingStrategy RANDOM_IDS = (sampleSize, random) -> new FirstN(sampleSize);
+
+	/**
+	 * {@return the builtin strategy with the given name}
+	 * @param name One of {@literal firstN}, {@literal reservoir}, {@literal stratified} or {@literal randomIds}, case-insensitive
+	 */
+	static SamplingStrategy of(String name) {
+		return switch (Objects.requireNonNull(name, "The name of a sampling strategy is required").toLowerCase(Locale.ROOT)) {
+			case "firstn" -> FIRST_N;
+			case "reservoir" -> RESERVOIR;
+			case "stratified" -> STRATIFIED;
+			case "randomids" -> RANDOM_IDS;
+			default -> throw new IllegalArgumentException("Unsupported sampling strategy " + name);
+		};
+	}
+
+	/**
+	 * Creates a new sampler for the relationships having one property.
+	 *
+	 * @param sampleSize The size of the sample, might be {@link Long#MAX_VALUE} for all relationships
+	 * @param random     The source of randomness for the sampler, only to be used from the thread using the sampler
+	 * @return A new sampler
+	 */
+	Sampler newSampler(long sampleSize, RandomGenerator random);
+
+	/**
+	 * Creates a new sampler using the random generator of the current thread.
+	 *
+	 * @param sampleSize The size of the sample, might be {@link Long#MAX_VALUE} for all relationships
+	 * @return A new sampler
+	 */
+	default Sampler newSampler(long sampleSize) {
+		return newSampler(sampleSize, ThreadLocalRandom.current());
+	}
+
+	/**
+	 * Samples the endpoints of relationships. Not thread safe.
+	 */
+	interface Sampler {
+
+		/**
+		 * Offers the next relationship to the sampler.
+		 *
+		 * @return {@literal true} if the endpoints of the relationship are required, in which case they must be
+		 * {@link #add(Endpoints) added} next
+		 */
+		boolean select();
+
+		/**
+		 * Adds the endpoints of the relationship selected last.
+		 *
+		 * @param endpoints The endpoints of the relationship
+		 */
+		void add(Endpoints endpoints);
+
+		/**
+		 * {@return true if no further relationship can change the sample}
+		 */
+		boolean isComplete();
+
+		/**
+		 * {@return the distinct endpoints of the sampled relationships}
+		 */
+		Set<Endpoints> getEndpoints();
+	}
+
+	/**
+	 * See {@link #FIRST_N} and {@link #RANDOM_IDS}.
+	 */
+	final class FirstN implements Sampler {
+
+		private final long sampleSize;
+		private final Set<Endpoints> endpoints = new LinkedHashSet<>();
+		private long selected;
+
+		FirstN(long sampleSize) {
+			this.sampleSize = sampleSize;
+		}
+
+		@Override
+		public boolean select() {
+			if (selected == sampleSize) {
+				return false;
+			}
+			++selected;
+			return true;
+		}
+
+		@Override
+		public void add(Endpoints relationshipEndpoints) {
+			endpoints.add(relationshipEndpoints);
+		}
+
+		@Override
+		public boolean isComplete() {
+			return selected == sampleSize;
+		}
+
+		@Override
+		public Set<Endpoints> getEndpoints() {
+			return endpoints;
+		}
+	}
+
+	/**
+	 * See {@link #RESERVOIR}.
+	 */
+	final class Reservoir implements Sampler {
+
+		/**
+		 * Reservoirs grow on demand up to the sample size, as many properties are present on fewer relationships than that.
+		 */
+		private Endpoints[] reservoir = new Endpoints[16];
+		private final long sampleSize;
+		private final RandomGenerator random;
+		private long seen;
+		private int slot;
+
+		Reservoir(long sampleSize, RandomGenerator random) {
+			if (sampleSize > Integer.MAX_VALUE - 8) {
+				throw new IllegalArgumentException("The sample size of a reservoir must not exceed " + (Integer.MAX_VALUE - 8));
+			}
+			this.sampleSize = sampleSize;
+			this.random = random;
+		}
+
+		@Override
+		public boolean select() {
+			++seen;
+			if (seen <= sampleSize) {
+				slot = (int) (seen - 1);
+				return true;
+			}
+			var candidate = random.nextLong(seen);
+			if (candidate < sampleSize) {
+				slot = (int) candidate;
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public void add(Endpoints endpoints) {
+			if (slot >= reservoir.length) {
+				reservoir = Arrays.copyOf(reservoir, (int) Math.min(sampleSize, 2L * reservoir.length));
+			}
+			reservoir[slot] = endpoints;
+		}
+
+		@Override
+		public boolean isComplete() {
+			return false;
+		}
+
+		@Override
+		public Set<Endpoints> getEndpoints() {
+			var endpoints = new LinkedHashSet<Endpoints>();
+			for (int i = 0; i < Math.min(seen, reservoir.length); ++i) {
+				if (reservoir[i] != null) {
+					endpoints.add(reservoir[i]);
+				}
+			}
+			return endpoints;
+		}
+	}
+
+	/**
+	 * See {@link #STRATIFIED}.
+	 */
+	final class StratifiedByStart implements Sampler {
+
+		private final long sampleSize;
+		private final Map<String, Long> selectedByStart = new HashMap<>();
+		private final Set<Endpoints> endpoints = new LinkedHashSet<>();
+
+		StratifiedByStart(long sampleSize) {
+			this.sampleSize = sampleSize;
+		}
+
+		@Override
+		public boolean select() {
+			return true;
+		}
+
+		@Override
+		public void add(Endpoints relationshipEndpoints) {
+			if (selectedByStart.merge(relationshipEndpoints.from(), 1L, Long::sum) <= sampleSize) {
+				endpoints.add(relationshipEndpoints);
+			}
+		}
+
+		@Override
+		public boolean isComplete() {
+			return false;
+		}
+
+		@Override
+		public Set<Endpoints> getEndpoints() {
+			return endpoints;
+		}
+	}
+}
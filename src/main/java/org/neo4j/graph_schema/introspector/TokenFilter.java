@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2023 "Neo4j,"
+ * Neo4j Sweden AB [https://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.graph_schema.introspector;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Decides which labels or relationship types are introspected, based on glob patterns for the tokens to include and to
+ * exclude. In a pattern, {@literal *} stands for any number of characters and {@literal ?} for exactly one character;
+ * everything else is matched literally and case-sensitive, just like tokens are. A token is in scope if it matches
+ * any of the include patterns (or if there are none) and doesn't match any of the exclude patterns. Immutable.
+ */
+final class TokenFilter implements Predicate<String> {
+
+	/**
+	 * Includes all tokens.
+	 */
+	static final TokenFilter ALL = new TokenFilter(token -> true);
+
+	/**
+	 * {@return a filter for the given patterns}
+	 * @param include The patterns of the tokens to include, all tokens are included if empty
+	 * @param exclude The patterns of the tokens to exclude
+	 */
+	static TokenFilter of(List<String> include, List<String> exclude) {
+
+		if (include.isEmpty() && exclude.isEmpty()) {
+			return ALL;
+		}
+		var includePatterns = include.stream().map(TokenFilter::toPattern).toList();
+		var excludePatterns = exclude.stream().map(TokenFilter::toPattern).toList();
+		return new TokenFilter(token -> (includePatterns.isEmpty() || includePatterns.stream().anyMatch(p -> p.matcher(token).matches()))
+			&& excludePatterns.stream().noneMatch(p -> p.matcher(token).matches()));
+	}
+
+	/**
+	 * {@return a filter including exactly the given tokens, without any wildcards}
+	 * @param tokens The tokens to include, none are included if empty
+	 */
+	static TokenFilter only(Collection<String> tokens) {
+		return new TokenFilter(Set.copyOf(tokens)::contains);
+	}
+
+	private final Predicate<String> predicate;
+
+	private TokenFilter(Predicate<String> predicate) {
+		this.predicate = predicate;
+	}
+
+	/**
+	 * {@return true if some tokens might be out of scope}
+	 */
+	boolean isFiltering() {
+		return this != ALL;
+	}
+
+	@Override
+	public boolean test(String token) {
+		return predicate.test(token);
+	}
+
+	/**
+	 * Translates a glob pattern into a regular expression, quoting everything but the wildcards.
+	 *
+	 * @param glob The glob pattern
+	 * @return A pattern matching the same tokens
+	 */
+	static Pattern toPattern(String glob) {
+
+		var regex = new StringBuilder();
+		var literal = new StringBuilder();
+		for (var c : glob.toCharArray()) {
+			if (c == '*' || c == '?') {
+				if (!literal.isEmpty()) {
+					regex.append(Pattern.quote(literal.toString()));
+					literal.setLength(0);
+				}
+				regex.append(c == '*' ? ".*" : ".");
+			} else {
+				literal.append(c);
+			}
+		}
+		if (!literal.isEmpty()) {
+			regex.append(Pattern.quote(literal.toString()));
+		}
+		return Pattern.compile(regex.toString(), Pattern.DOTALL);
+	}
+}
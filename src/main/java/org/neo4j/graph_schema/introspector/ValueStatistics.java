@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2023 "Neo4j,"
+ * Neo4j Sweden AB [https://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.graph_schema.introspector;
+
+import org.neo4j.graph_schema.introspector.GraphSchema.Lengths;
+import org.neo4j.graph_schema.introspector.GraphSchema.Range;
+import org.neo4j.graph_schema.introspector.GraphSchema.Statistics;
+import org.neo4j.memory.HeapEstimator;
+import org.neo4j.values.storable.ArrayValue;
+import org.neo4j.values.storable.FloatingPointValue;
+import org.neo4j.values.storable.IntegralValue;
+import org.neo4j.values.storable.TemporalValue;
+import org.neo4j.values.storable.TextValue;
+import org.neo4j.values.storable.Value;
+import org.neo4j.values.storable.Values;
+
+/**
+ * Accumulates the values of one property: a {@link HyperLogLog sketch} of the distinct values, the range of numeric
+ * and temporal values and the lengths of strings and arrays. Apart from the sketch, all of it is kept in primitive
+ * fields, so that adding a value doesn't allocate. The smallest and largest temporal values are the only references
+ * kept. Values of different temporal types, such as dates and datetimes, don't form a meaningful range, so there is no
+ * temporal range once they are mixed. Not thread safe.
+ */
+final class ValueStatistics {
+
+	/**
+	 * The estimated size of the statistics of one property, including the sketch.
+	 */
+	static final long SIZE = HeapEstimator.shallowSizeOfInstance(ValueStatistics.class) + HyperLogLog.SIZE;
+
+	private final HyperLogLog sketch = new HyperLogLog();
+
+	private long integers;
+	private long minInteger = Long.MAX_VALUE;
+	private long maxInteger = Long.MIN_VALUE;
+
+	private long floats;
+	private double minFloat = Double.POSITIVE_INFINITY;
+	private double maxFloat = Double.NEGATIVE_INFINITY;
+
+	private Value minTemporal;
+	private Value maxTemporal;
+	private boolean mixedTemporals;
+
+	private long strings;
+	private long totalStringLength;
+	private int maxStringLength;
+
+	private long arrays;
+	private long totalArrayLength;
+	private int maxArrayLength;
+
+	/**
+	 * Adds a single value.
+	 *
+	 * @param value The value to add
+	 */
+	void add(Value value) {
+
+		sketch.add(value);
+		if (value instanceof IntegralValue integralValue) {
+			var longValue = integralValue.longValue();
+			++integers;
+			minInteger = Math.min(minInteger, longValue);
+			maxInteger = Math.max(maxInteger, longValue);
+		} else if (value instanceof FloatingPointValue floatingPointValue) {
+			var doubleValue = floatingPointValue.doubleValue();
+			if (!Double.isNaN(doubleValue)) {
+				++floats;
+				minFloat = Math.min(minFloat, doubleValue);
+				maxFloat = Math.max(maxFloat, doubleValue);
+			}
+		} else if (value instanceof TextValue textValue) {
+			var length = textValue.length();
+			++strings;
+			totalStringLength += length;
+			maxStringLength = Math.max(maxStringLength, length);
+		} else if (value instanceof ArrayValue arrayValue) {
+			var length = arrayValue.length();
+			++arrays;
+			totalArrayLength += length;
+			maxArrayLength = Math.max(maxArrayLength, length);
+		} else if (value instanceof TemporalValue<?, ?>) {
+			mixedTemporals |= minTemporal != null && minTemporal.valueGroup() != value.valueGroup();
+			if (minTemporal == null || Values.COMPARATOR.compare(value, minTemporal) < 0) {
+				minTemporal = value;
+			}
+			if (maxTemporal == null || Values.COMPARATOR.compare(value, maxTemporal) > 0) {
+				maxTemporal = value;
+			}
+		}
+	}
+
+	/**
+	 * Merges the values of another set of entities into this one.
+	 *
+	 * @param other The statistics to merge
+	 * @return This instance
+	 */
+	ValueStatistics merge(ValueStatistics other) {
+
+		sketch.merge(other.sketch);
+		integers += other.integers;
+		minInteger = Math.min(minInteger, other.minInteger);
+		maxInteger = Math.max(maxInteger, other.maxInteger);
+		floats += other.floats;
+		minFloat = Math.min(minFloat, other.minFloat);
+		maxFloat = Math.max(maxFloat, other.maxFloat);
+		mixedTemporals |= other.mixedTemporals || minTemporal != null && other.minTemporal != null && minTemporal.valueGroup() != other.minTemporal.valueGroup();
+		if (other.minTemporal != null && (minTemporal == null || Values.COMPARATOR.compare(other.minTemporal, minTemporal) < 0)) {
+			minTemporal = other.minTemporal;
+		}
+		if (other.maxTemporal != null && (maxTemporal == null || Values.COMPARATOR.compare(other.maxTemporal, maxTemporal) > 0)) {
+			maxTemporal = other.maxTemporal;
+		}
+		strings += other.strings;
+		totalStringLength += other.totalStringLength;
+		maxStringLength = Math.max(maxStringLength, other.maxStringLength);
+		arrays += other.arrays;
+		totalArrayLength += other.totalArrayLength;
+		maxArrayLength = Math.max(maxArrayLength, other.maxArrayLength);
+		return this;
+	}
+
+	/**
+	 * {@return the statistics of the values added}
+	 * @param count The number of entities having the property
+	 */
+	Statistics toStatistics(long count) {
+
+		var distinctValues = Math.min(sketch.estimate(), count);
+		return new Statistics(distinctValues, (double) distinctValues / count, getNumericRange(), getTemporalRange(),
+			getLengths(strings, totalStringLength, maxStringLength), getLengths(arrays, totalArrayLength, maxArrayLength));
+	}
+
+	/**
+	 * Integers and floats are ranged together, each bound keeping the type of the value it stems from.
+	 */
+	private Range getNumericRange() {
+
+		if (integers == 0 && floats == 0) {
+			return null;
+		}
+		Object min;
+		Object max;
+		if (floats == 0) {
+			min = minInteger;
+			max = maxInteger;
+		} else if (integers == 0) {
+			min = minFloat;
+			max = maxFloat;
+		} else {
+			min = minFloat < minInteger ? (Object) minFloat : (Object) minInteger;
+			max = maxFloat > maxInteger ? (Object) maxFloat : (Object) maxInteger;
+		}
+		return new Range(min, max);
+	}
+
+	private Range getTemporalRange() {
+		return minTemporal == null || mixedTemporals ? null : new Range(minTemporal.prettyPrint(), maxTemporal.prettyPrint());
+	}
+
+	private static Lengths getLengths(long values, long totalLength, int maxLength) {
+		return values == 0 ? null : new Lengths((double) totalLength / values, maxLength);
+	}
+}
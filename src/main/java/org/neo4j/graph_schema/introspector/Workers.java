@@ -0,0 +1,449 @@
+/*
+ * Copyright (c) 2023 "Neo4j,"
+ * Neo4j Sweden AB [https://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.graph_schema.introspector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.internal.kernel.api.security.AccessMode;
+import org.neo4j.kernel.api.ExecutionContext;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.txstate.TxStateHolder;
+import org.neo4j.kernel.impl.api.security.RestrictedAccessMode;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+/**
+ * Runs the work of one introspection on a number of workers, such as one relationship type at a time. The calling
+ * thread is always one of the workers, the others are borrowed from an executor shared by all introspections, so that
+ * concurrent calls don't multiply the number of threads. Borrowed workers run in a read transaction of their own, on
+ * behalf of the user of the calling transaction. Work is handed out to the workers as they become available, and work
+ * that no borrowed worker has picked up once the calling thread is done is taken over by the calling thread, hence the
+ * calling thread never waits for a busy executor. With a parallelism of one, or if the calling transaction has
+ * uncommitted changes that transactions of their own would not see, all work runs one item after another in the
+ * calling transaction. Borrowed workers are returned before {@link #map(List, Task)} and
+ * {@link #runOnEachWorker(SharedTask)} return, and once a {@link #fork(Phase) forked} phase is joined or cancelled,
+ * hence there is nothing to close.
+ * <p>
+ * Partitioned scans, however, are shared by all workers within the calling transaction, see {@link #runOnEachWorker(SharedTask)}.
+ */
+final class Workers {
+
+	/**
+	 * The executor lending workers to all introspections, bounded by the number of available processors.
+	 */
+	private static final ExecutorService SHARED_EXECUTOR = newSharedExecutor(Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * A unit of work, applied to one item in a transaction.
+	 *
+	 * @param <T> The type of the items
+	 * @param <R> The type of the results
+	 */
+	@FunctionalInterface
+	interface Task<T, R> {
+
+		R apply(Transaction transaction, T item) throws Exception;
+	}
+
+	/**
+	 * A unit of work running on one worker in an execution context of the calling transaction.
+	 *
+	 * @param <R> The type of the result
+	 */
+	@FunctionalInterface
+	interface SharedTask<R> {
+
+		R apply(ExecutionContext executionContext) throws Exception;
+	}
+
+	/**
+	 * A phase of an introspection, running in a transaction concurrently to other phases.
+	 *
+	 * @param <R> The type of the result
+	 */
+	@FunctionalInterface
+	interface Phase<R> {
+
+		R apply(Transaction transaction) throws Exception;
+	}
+
+	/**
+	 * Creates the workers of one introspection. The parallelism is capped at the number of available processors, as
+	 * the shared executor never lends more workers than that, and partitioned scans would otherwise be split into more
+	 * partitions than there are threads to scan them.
+	 *
+	 * @param databaseService The database to begin the transactions of borrowed workers in
+	 * @param transaction     The calling transaction
+	 * @param parallelism     The requested number of workers, including the calling thread
+	 * @return The workers
+	 */
+	static Workers of(GraphDatabaseService databaseService, Transaction transaction, int parallelism) {
+		return new Workers(databaseService, transaction, Math.min(parallelism, Runtime.getRuntime().availableProcessors()));
+	}
+
+	private final GraphDatabaseService databaseService;
+
+	private final Transaction transaction;
+
+	private final int parallelism;
+
+	private Workers(GraphDatabaseService databaseService, Transaction transaction, int parallelism) {
+		this.databaseService = databaseService;
+		this.transaction = transaction;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * {@return the number of workers}
+	 */
+	int parallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * {@return true if the calling transaction has uncommitted changes, which transactions of their own don't see}
+	 */
+	boolean callingTransactionHasChanges() {
+		return hasChanges(transaction);
+	}
+
+	private static boolean hasChanges(Transaction transaction) {
+		return ((InternalTransaction) transaction).kernelTransaction() instanceof TxStateHolder txStateHolder && txStateHolder.hasTxStateWithChanges();
+	}
+
+	/**
+	 * Applies the given task to all items, using the calling transaction for tasks that don't run in a transaction of
+	 * their own.
+	 *
+	 * @see #map(Transaction, List, Task)
+	 */
+	<T, R> List<R> map(List<T> items, Task<T, R> task) throws Exception {
+		return map(transaction, items, task);
+	}
+
+	/**
+	 * Applies the given task to all items. The thread of the caller works on the items in the given transaction, the
+	 * borrowed workers in transactions of their own. Once any task fails, no further items are handed out.
+	 *
+	 * @param owningTransaction The transaction of the caller
+	 * @param items             The items to work on
+	 * @param task              The task applied to each item
+	 * @param <T>               The type of the items
+	 * @param <R>               The type of the results
+	 * @return The results in the order of the items, regardless of the order in which the tasks completed
+	 * @throws Exception The first exception thrown by any of the tasks
+	 */
+	<T, R> List<R> map(Transaction owningTransaction, List<T> items, Task<T, R> task) throws Exception {
+
+		if (parallelism == 1 || items.size() < 2 || hasChanges(owningTransaction)) {
+			var results = new ArrayList<R>(items.size());
+			for (var item : items) {
+				results.add(task.apply(owningTransaction, item));
+			}
+			return results;
+		}
+
+		var results = new AtomicReferenceArray<R>(items.size());
+		var next = new AtomicInteger();
+		Phase<Void> drain = workerTransaction -> {
+			for (int i = next.getAndIncrement(); i < items.size(); i = next.getAndIncrement()) {
+				try {
+					results.set(i, task.apply(workerTransaction, items.get(i)));
+				} catch (Exception e) {
+					next.set(items.size());
+					throw e;
+				}
+			}
+			return null;
+		};
+
+		var helpers = new ArrayList<Helper<Void>>();
+		for (int i = 1; i < Math.min(parallelism, items.size()); ++i) {
+			helpers.add(Helper.submit(() -> {
+				try (var workerTransaction = beginWorkerTransaction()) {
+					return drain.apply(workerTransaction);
+				}
+			}));
+		}
+		Exception failure = null;
+		try {
+			drain.apply(owningTransaction);
+		} catch (Exception e) {
+			failure = e;
+		}
+		awaitAll(helpers, failure);
+
+		var list = new ArrayList<R>(items.size());
+		for (int i = 0; i < items.size(); ++i) {
+			list.add(results.get(i));
+		}
+		return list;
+	}
+
+	/**
+	 * Runs the given task once on every worker, all of them sharing the calling transaction through execution contexts
+	 * of their own. This is meant for partitioned scans, with each worker reserving partitions until none are left, so
+	 * that the partitions of a worker that never got a thread are reserved by the others. The contexts are closed only
+	 * once every worker is done with its context, even if any of them failed, as cursors still in use by other workers
+	 * can't be stopped. Every context is completed, whether its task succeeded, failed or never ran.
+	 *
+	 * @param task The task to run on every worker
+	 * @param <R>  The type of the results
+	 * @return The results of all workers that ran, in no particular order
+	 * @throws Exception The first exception thrown by any of the workers
+	 */
+	<R> List<R> runOnEachWorker(SharedTask<R> task) throws Exception {
+
+		var kernelTransaction = ((InternalTransaction) transaction).kernelTransaction();
+		var executionContexts = new ArrayList<ExecutionContext>(parallelism);
+		var handedOut = 0;
+		try {
+			for (int i = 0; i < parallelism; ++i) {
+				executionContexts.add(kernelTransaction.createExecutionContext());
+			}
+			var helpers = new ArrayList<Helper<R>>(parallelism - 1);
+			for (var executionContext : executionContexts.subList(1, parallelism)) {
+				helpers.add(Helper.submit(() -> runAndComplete(task, executionContext)));
+			}
+			handedOut = parallelism;
+
+			var results = new ArrayList<R>(parallelism);
+			Exception failure = null;
+			try {
+				results.add(runAndComplete(task, executionContexts.get(0)));
+			} catch (Exception e) {
+				failure = e;
+			}
+			for (int i = 0; i < helpers.size(); ++i) {
+				var helper = helpers.get(i);
+				if (helper.takeOver()) {
+					executionContexts.get(i + 1).complete();
+					continue;
+				}
+				try {
+					results.add(helper.join());
+				} catch (Exception e) {
+					if (failure == null) {
+						failure = e;
+					}
+				}
+			}
+			if (failure != null) {
+				throw failure;
+			}
+			return results;
+		} finally {
+			// Contexts can only be closed once completed, which those not handed out to any worker are not
+			for (var executionContext : executionContexts.subList(handedOut, executionContexts.size())) {
+				executionContext.complete();
+			}
+			executionContexts.forEach(ExecutionContext::close);
+		}
+	}
+
+	/**
+	 * Starts the given phase in a read transaction of its own on a worker borrowed from the shared executor, so that
+	 * the phase runs concurrently to the caller. Only to be used with more than one worker. If no worker has picked up
+	 * the phase by the time it is {@link Forked#join() joined}, the caller runs it in the calling transaction instead.
+	 *
+	 * @param phase The phase to start
+	 * @param <R>   The type of the result
+	 * @return The forked phase
+	 */
+	<R> Forked<R> fork(Phase<R> phase) {
+		return new Forked<>(phase);
+	}
+
+	private static <R> R runAndComplete(SharedTask<R> task, ExecutionContext executionContext) throws Exception {
+		try {
+			return task.apply(executionContext);
+		} finally {
+			executionContext.complete();
+		}
+	}
+
+	/**
+	 * Waits for all borrowed workers that have started, taking over those that have not.
+	 *
+	 * @param helpers The borrowed workers
+	 * @param failure The exception thrown by the calling thread, if any, which takes precedence
+	 * @throws Exception The exception of the caller or the first exception thrown by any of the helpers
+	 */
+	private static void awaitAll(List<? extends Helper<?>> helpers, Exception failure) throws Exception {
+
+		for (var helper : helpers) {
+			if (helper.takeOver()) {
+				continue;
+			}
+			try {
+				helper.join();
+			} catch (Exception e) {
+				if (failure == null) {
+					failure = e;
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private static Exception unwrap(ExecutionException e) {
+		return e.getCause() instanceof Exception cause ? cause : e;
+	}
+
+	private Transaction beginWorkerTransaction() {
+
+		var callingTransaction = (InternalTransaction) transaction;
+		var securityContext = callingTransaction.securityContext();
+		return ((GraphDatabaseAPI) databaseService).beginTransaction(
+			KernelTransaction.Type.EXPLICIT,
+			securityContext.withMode(new RestrictedAccessMode(securityContext.mode(), AccessMode.Static.READ)),
+			callingTransaction.clientInfo()
+		);
+	}
+
+	private static ExecutorService newSharedExecutor(int threads) {
+		var executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new WorkerThreadFactory());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * A phase running concurrently to the caller, see {@link #fork(Phase)}.
+	 *
+	 * @param <R> The type of the result
+	 */
+	final class Forked<R> {
+
+		private final Phase<R> phase;
+		private final Helper<R> helper;
+		private Transaction phaseTransaction;
+		private boolean cancelled;
+
+		private Forked(Phase<R> phase) {
+			this.phase = phase;
+			this.helper = Helper.submit(() -> {
+				try (var newTransaction = beginWorkerTransaction()) {
+					synchronized (this) {
+						phaseTransaction = newTransaction;
+						if (cancelled) {
+							newTransaction.terminate();
+						}
+					}
+					return phase.apply(newTransaction);
+				}
+			});
+		}
+
+		/**
+		 * Waits for the phase, or runs it in the calling transaction if no worker has picked it up yet.
+		 *
+		 * @return The result of the phase
+		 * @throws Exception The exception thrown by the phase
+		 */
+		R join() throws Exception {
+			return helper.takeOver() ? phase.apply(transaction) : helper.join();
+		}
+
+		/**
+		 * Stops the phase, as its result is not needed anymore: The transaction of the phase is terminated, and this
+		 * method returns only once the phase is done, so that nothing keeps running after the caller failed.
+		 */
+		void cancel() {
+			if (helper.takeOver()) {
+				return;
+			}
+			synchronized (this) {
+				cancelled = true;
+				if (phaseTransaction != null) {
+					phaseTransaction.terminate();
+				}
+			}
+			try {
+				helper.join();
+			} catch (Exception e) {
+				// The phase is expected to fail once terminated, its outcome doesn't matter anymore
+			}
+		}
+	}
+
+	/**
+	 * Work submitted to the shared executor, that the caller can take over as long as no worker has picked it up.
+	 *
+	 * @param <R> The type of the result
+	 */
+	private static final class Helper<R> {
+
+		private final AtomicBoolean claimed = new AtomicBoolean();
+		private final Future<R> future;
+
+		private Helper(Callable<R> work) {
+			this.future = SHARED_EXECUTOR.submit(() -> claimed.compareAndSet(false, true) ? work.call() : null);
+		}
+
+		static <R> Helper<R> submit(Callable<R> work) {
+			return new Helper<>(work);
+		}
+
+		/**
+		 * {@return true if no worker has picked up the work, which then never runs}
+		 */
+		boolean takeOver() {
+			return claimed.compareAndSet(false, true);
+		}
+
+		/**
+		 * {@return the result of work that has been picked up by a worker}
+		 */
+		R join() throws Exception {
+			try {
+				return future.get();
+			} catch (ExecutionException e) {
+				throw unwrap(e);
+			}
+		}
+	}
+
+	private static final class WorkerThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			var thread = new Thread(runnable, "graph-schema-introspector-worker-" + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -19,13 +19,26 @@
 package org.neo4j.graph_schema.introspector;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
 
 import java.lang.reflect.InvocationTargetException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.assertj.core.data.Percentage;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.platform.commons.util.ReflectionUtils;
+import org.neo4j.memory.LocalMemoryTracker;
+import org.neo4j.memory.MemoryLimitExceededException;
+import org.neo4j.values.storable.Values;
 
 /**
  * @author Michael J. Simons
@@ -38,44 +51,339 @@ class GraphSchemaTest {
 		@Test
 		void shouldSampleByDefault() throws InvocationTargetException, IllegalAccessException {
 
-			var getRelationshipPropertiesQuery = ReflectionUtils.getRequiredMethod(GraphSchema.Introspector.class, "getRelationshipPropertiesQuery", Introspect.Config.class);
-			getRelationshipPropertiesQuery.setAccessible(true);
-			var query = getRelationshipPropertiesQuery.invoke(null, new Introspect.Config(Map.of()));
+			var getSampleSize = ReflectionUtils.getRequiredMethod(GraphSchema.Introspector.class, "getSampleSize", Introspect.Config.class);
+			getSampleSize.setAccessible(true);
+			var sampleSize = getSampleSize.invoke(null, new Introspect.Config(Map.of()));
+			assertThat(sampleSize).isEqualTo(100L);
+		}
+
+		@Test
+		void sampleCanBeDisabled() throws InvocationTargetException, IllegalAccessException {
+
+			var getSampleSize = ReflectionUtils.getRequiredMethod(GraphSchema.Introspector.class, "getSampleSize", Introspect.Config.class);
+			getSampleSize.setAccessible(true);
+			var sampleSize = getSampleSize.invoke(null, new Introspect.Config(Map.of("sampleOnly", false)));
+			assertThat(sampleSize).isEqualTo(Long.MAX_VALUE);
+		}
+
+		@Test
+		void nodesShouldOnlyBeSampledOnRequest() {
+
+			assertThat(GraphSchema.Introspector.getNodeSampleSize(new Introspect.Config(Map.of()))).isEqualTo(Long.MAX_VALUE);
+			assertThat(GraphSchema.Introspector.getNodeSampleSize(new Introspect.Config(Map.of("sampleNodes", true)))).isEqualTo(GraphSchema.Introspector.DEFAULT_SAMPLE_SIZE);
+			assertThat(GraphSchema.Introspector.getNodeSampleSize(new Introspect.Config(Map.of("sampleOnly", false, "sampleNodes", true)))).isEqualTo(Long.MAX_VALUE);
+		}
+
+		@Test
+		void countStoreRequiresKernelEngine() {
+
+			assertThatIllegalArgumentException().isThrownBy(() -> new Introspect.Config(Map.of("useCountStore", true)))
+				.withMessage("The count store can only be used with the kernel engine");
+			assertThat(new Introspect.Config(Map.of("useCountStore", true, "engine", "kernel")).useCountStore()).isTrue();
+		}
+
+		@Test
+		void countStoreRequiresAllNodes() {
+
+			assertThatIllegalArgumentException().isThrownBy(() -> new Introspect.Config(Map.of("useCountStore", true, "engine", "kernel", "sampleNodes", true)))
+				.withMessage("The count store can only be used when all nodes are looked at");
+			assertThat(new Introspect.Config(Map.of("useCountStore", true, "engine", "kernel", "sampleNodes", false)).useCountStore()).isTrue();
+		}
+
+		@Test
+		void sampleSizeShouldBeConfigurable() throws InvocationTargetException, IllegalAccessException {
+
+			var getSampleSize = ReflectionUtils.getRequiredMethod(GraphSchema.Introspector.class, "getSampleSize", Introspect.Config.class);
+			getSampleSize.setAccessible(true);
+			var sampleSize = getSampleSize.invoke(null, new Introspect.Config(Map.of("sampleSize", 42L)));
+			assertThat(sampleSize).isEqualTo(42L);
+			assertThatIllegalArgumentException().isThrownBy(() -> new Introspect.Config(Map.of("sampleSize", 0)))
+				.withMessage("The sample size must be at least 1");
+		}
+
+		@Test
+		void randomIdsRequireKernelEngine() {
+
+			assertThatIllegalArgumentException().isThrownBy(() -> new Introspect.Config(Map.of("samplingStrategy", "randomIds")))
+				.withMessage("Random ids can only be sampled with the kernel engine");
+			assertThat(new Introspect.Config(Map.of("samplingStrategy", "randomIds", "engine", "kernel")).samplingStrategy()).isSameAs(SamplingStrategy.RANDOM_IDS);
+		}
+
+		@Test
+		void parallelismMustBePositive() {
+
+			assertThatIllegalArgumentException().isThrownBy(() -> new Introspect.Config(Map.of("parallelism", 0)))
+				.withMessage("The parallelism must be at least 1");
+			assertThat(new Introspect.Config(Map.of("parallelism", 4L)).parallelism()).isEqualTo(4);
+		}
+
+		@Test
+		void convergenceWindowMustNotBeNegative() {
+
+			assertThatIllegalArgumentException().isThrownBy(() -> new Introspect.Config(Map.of("convergenceWindow", -1)))
+				.withMessage("The convergence window must not be negative");
+			assertThat(new Introspect.Config(Map.of()).convergenceWindow()).isZero();
+		}
+
+		@Test
+		void maxRelationshipsPerNodeRequiresKernelEngine() {
+
+			assertThatIllegalArgumentException().isThrownBy(() -> new Introspect.Config(Map.of("maxRelationshipsPerNode", 10)))
+				.withMessage("The number of relationships per node can only be capped with the kernel engine");
+			assertThatIllegalArgumentException().isThrownBy(() -> new Introspect.Config(Map.of("engine", "kernel", "maxRelationshipsPerNode", -1)))
+				.withMessage("The number of relationships per node must not be negative");
+			assertThat(new Introspect.Config(Map.of("engine", "kernel", "maxRelationshipsPerNode", 10L)).maxRelationshipsPerNode()).isEqualTo(10);
+		}
+
+		@Test
+		void seedShouldBeOptional() {
+
+			assertThat(new Introspect.Config(Map.of()).seed()).isNull();
+			assertThat(new Introspect.Config(Map.of("seed", 42)).seed()).isEqualTo(42L);
+		}
+
+		@Test
+		void timeBudgetMustNotBeNegative() {
+
+			assertThatIllegalArgumentException().isThrownBy(() -> new Introspect.Config(Map.of("timeBudgetMs", -1)))
+				.withMessage("The time budget must not be negative");
+			assertThat(Deadline.of(0)).isSameAs(Deadline.NONE);
+		}
+
+		@Test
+		void timeBudgetsShouldImplyTheKernelEngine() {
+
+			var config = new Introspect.Config(Map.of("timeBudgetMs", 500, "useCountStore", true, "samplingStrategy", "randomIds", "maxRelationshipsPerNode", 10));
+			assertThat(config.engine()).isEqualTo(Introspect.Engine.KERNEL);
+			assertThat(new Introspect.Config(Map.of("timeBudgetMs", 500, "engine", "cypher")).engine()).isEqualTo(Introspect.Engine.KERNEL);
+			assertThat(new Introspect.Config(Map.of()).engine()).isEqualTo(Introspect.Engine.CYPHER);
+		}
+
+		@Test
+		void deadlinesShouldExpire() {
+
+			var now = new AtomicLong(1_000);
+			var deadline = Deadline.of(20, now::get);
+			assertThat(deadline.isExpired()).isFalse();
+			now.addAndGet(TimeUnit.MILLISECONDS.toNanos(20) - 1);
+			assertThat(deadline.isExpired()).isFalse();
+			now.incrementAndGet();
+			assertThat(deadline.isExpired()).isTrue();
+			assertThat(Deadline.NONE.isExpired()).isFalse();
+		}
+
+		@Test
+		void constantIdsShouldBeAssembledFromFragments() {
+
+			var constantIds = new GraphSchema.Introspector.ConstantIds();
+			assertThat(constantIds.of("n", ":`A`:`B`")).isEqualTo("n:A:B");
+			assertThat(constantIds.of("n", ":`B`:`A`")).isEqualTo("n:B:A");
+			assertThat(constantIds.of("n", ":")).isEqualTo("n:");
+			assertThat(constantIds.of("n", ":` A `:`B C`")).isEqualTo("n: A :B C");
+			assertThat(constantIds.of("n", ":`a`b`:``")).isEqualTo("n:a`b:``");
+			assertThat(constantIds.of("n", ":`a\nb`")).isEqualTo("n:`a\nb`");
+			assertThat(constantIds.of("r", "KNOWS")).isEqualTo("r:KNOWS");
+			assertThat(constantIds.of("r", " A : B ")).isEqualTo("r:A:B");
+		}
+
+		@Test
+		void maxMemoryBytesMustNotBeNegative() {
+
+			assertThatIllegalArgumentException().isThrownBy(() -> new Introspect.Config(Map.of("maxMemoryBytes", -1)))
+				.withMessage("The memory limit must not be negative");
+		}
+
+		@Test
+		void memoryBudgetsShouldBeAccountedAndReleased() throws InterruptedException {
+
+			var memoryTracker = new LocalMemoryTracker();
+			try (var memory = new MemoryBudget(memoryTracker, 100)) {
+				memory.allocate(60);
+				assertThat(memoryTracker.estimatedHeapMemory()).isEqualTo(60);
+				assertThatExceptionOfType(MemoryLimitExceededException.class).isThrownBy(() -> memory.allocate(41));
+				assertThat(memory.allocated()).isEqualTo(60);
+
+				var worker = new Thread(() -> memory.allocate(30));
+				worker.start();
+				worker.join();
+				assertThat(memoryTracker.estimatedHeapMemory()).isEqualTo(60);
+				memory.reconcile();
+				assertThat(memoryTracker.estimatedHeapMemory()).isEqualTo(90);
+			}
+			assertThat(memoryTracker.estimatedHeapMemory()).isZero();
+		}
+
+		@Test
+		void constraintsShouldMakePropertiesMandatory() {
+
+			var constraints = new Constraints(Map.of("Person", Set.of("name")), Map.of("KNOWS", Set.of("since")));
+			var types = List.of(new GraphSchema.Type("string", null));
+
+			assertThat(constraints.applyToNode(List.of("Actor", "Person"), new GraphSchema.Property("name", types, false)))
+				.isEqualTo(new GraphSchema.Property("name", types, true));
+			assertThat(constraints.applyToNode(List.of("Actor"), new GraphSchema.Property("name", types, false)).mandatory()).isFalse();
+			assertThat(constraints.applyToNode(List.of("Person"), new GraphSchema.Property("born", types, false)).mandatory()).isFalse();
+			assertThat(constraints.applyToRelationship("KNOWS", new GraphSchema.Property("since", types, false)).mandatory()).isTrue();
+			assertThat(constraints.applyToRelationship("LIKES", new GraphSchema.Property("since", types, false)).mandatory()).isFalse();
+			assertThat(Constraints.NONE.applyToNode(List.of("Person"), new GraphSchema.Property("name", types, false)).mandatory()).isFalse();
+		}
+
+		@Test
+		void tokenFiltersShouldMatchGlobs() {
+
+			var filter = TokenFilter.of(List.of("Movie*", "P?rson", "a.b"), List.of("*Draft"));
+			assertThat(filter.isFiltering()).isTrue();
+			assertThat(filter.test("Movie")).isTrue();
+			assertThat(filter.test("MovieSeries")).isTrue();
+			assertThat(filter.test("MovieDraft")).isFalse();
+			assertThat(filter.test("Person")).isTrue();
+			assertThat(filter.test("Persson")).isFalse();
+			assertThat(filter.test("person")).isFalse();
+			assertThat(filter.test("a.b")).isTrue();
+			assertThat(filter.test("axb")).isFalse();
+
+			var excludeOnly = TokenFilter.of(List.of(), List.of("_*"));
+			assertThat(excludeOnly.test("Movie")).isTrue();
+			assertThat(excludeOnly.test("_Internal")).isFalse();
+			assertThat(TokenFilter.of(List.of(), List.of())).isSameAs(TokenFilter.ALL);
+			assertThat(TokenFilter.ALL.isFiltering()).isFalse();
+		}
+
+		@Test
+		void neighborhoodsShouldPruneSamplesAndUnexploredTokens() throws ReflectiveOperationException {
+
+			var a = new GraphSchema.Ref("n:A");
+			var b = new GraphSchema.Ref("n:B");
+			var c = new GraphSchema.Ref("n:C");
+			var nodeObjectTypes = new LinkedHashMap<GraphSchema.Ref, GraphSchema.NodeObjectType>();
+			nodeObjectTypes.put(a, new GraphSchema.NodeObjectType(a.value(), List.of(new GraphSchema.Ref("nl:A"))));
+			nodeObjectTypes.put(b, new GraphSchema.NodeObjectType(b.value(), List.of(new GraphSchema.Ref("nl:B"))));
+			nodeObjectTypes.put(c, new GraphSchema.NodeObjectType(c.value(), List.of(new GraphSchema.Ref("nl:C"))));
+			var relationshipObjectTypes = new LinkedHashMap<GraphSchema.Ref, GraphSchema.RelationshipObjectType>();
+			var ab = new GraphSchema.Ref("r:AB");
+			var bc = new GraphSchema.Ref("r:BC");
+			relationshipObjectTypes.put(ab, new GraphSchema.RelationshipObjectType(ab.value(), new GraphSchema.Ref("rt:AB"), a, b));
+			relationshipObjectTypes.put(bc, new GraphSchema.RelationshipObjectType(bc.value(), new GraphSchema.Ref("rt:BC"), b, c));
+
+			var constructor = GraphSchema.class.getDeclaredConstructor(Map.class, Map.class, Map.class, Map.class, GraphSchema.Samples.class, GraphSchema.Unexplored.class);
+			constructor.setAccessible(true);
+			var graphSchema = constructor.newInstance(
+				Map.of("A", new GraphSchema.Token("nl:A", "A"), "B", new GraphSchema.Token("nl:B", "B"), "C", new GraphSchema.Token("nl:C", "C"), "D", new GraphSchema.Token("nl:D", "D")),
+				Map.of("AB", new GraphSchema.Token("rt:AB", "AB"), "BC", new GraphSchema.Token("rt:BC", "BC")),
+				nodeObjectTypes, relationshipObjectTypes,
+				new GraphSchema.Samples(Map.of("A", 1L, "B", 2L, "C", 3L), Map.of("AB", 4L, "BC", 5L)),
+				new GraphSchema.Unexplored(List.of("C", "D"), List.of("BC")));
+
+			var neighborhood = graphSchema.around("A", 1);
+			assertThat(neighborhood.nodeObjectTypes()).containsOnlyKeys(a, b);
+			assertThat(neighborhood.samples().nodeLabels()).containsOnlyKeys("A", "B");
+			assertThat(neighborhood.samples().relationshipTypes()).containsOnlyKeys("AB");
+			// C is known to be two hops away, D might still be next to A
+			assertThat(neighborhood.unexplored().nodeLabels()).containsExactly("D");
+			assertThat(neighborhood.unexplored().relationshipTypes()).isEmpty();
+		}
+
+		@Test
+		void hyperLogLogShouldEstimateDistinctValues() {
+
+			var sketch = new HyperLogLog();
+			for (int i = 0; i < 100_000; ++i) {
+				sketch.add(Values.longValue(i));
+				sketch.add(Values.longValue(i));
+			}
+			assertThat(sketch.estimate()).isBetween(95_000L, 105_000L);
+
+			var small = new HyperLogLog();
+			for (var value : List.of("a", "b", "c", "a")) {
+				small.add(Values.stringValue(value));
+			}
+			assertThat(small.estimate()).isEqualTo(3L);
+			assertThat(new HyperLogLog().estimate()).isZero();
+
+			var other = new HyperLogLog();
+			for (var value : List.of("c", "d")) {
+				other.add(Values.stringValue(value));
+			}
+			assertThat(small.merge(other).estimate()).isEqualTo(4L);
+
+			// Exact up to the threshold, so that candidate keys have a uniqueness of 1.0
+			var exact = new HyperLogLog();
+			var rest = new HyperLogLog();
+			for (int i = 0; i < HyperLogLog.EXACT_THRESHOLD; ++i) {
+				(i % 2 == 0 ? exact : rest).add(Values.longValue(i));
+				rest.add(Values.longValue(i % 10));
+			}
+			assertThat(exact.merge(rest).estimate()).isEqualTo(HyperLogLog.EXACT_THRESHOLD);
+			exact.add(Values.longValue(-1));
+			assertThat(exact.estimate()).isCloseTo(HyperLogLog.EXACT_THRESHOLD + 1, Percentage.withPercentage(5));
+		}
+
+		@Test
+		void valueStatisticsShouldTrackRangesAndLengths() {
+
+			var statistics = new ValueStatistics();
+			statistics.add(Values.longValue(3));
+			statistics.add(Values.longValue(-7));
+			statistics.add(Values.doubleValue(2.5));
+			statistics.add(Values.stringValue("abc"));
+			statistics.add(Values.stringValue("abcdef"));
+			statistics.add(Values.of(LocalDate.of(2023, 1, 2)));
+
+			var other = new ValueStatistics();
+			other.add(Values.doubleValue(10.5));
+			other.add(Values.of(LocalDate.of(2022, 12, 31)));
+			other.add(Values.longArray(new long[] {1, 2, 3, 4}));
+			other.add(Values.stringArray("a"));
+
+			var result = statistics.merge(other).toStatistics(10);
+			assertThat(result.distinctValues()).isEqualTo(10L);
+			assertThat(result.uniqueness()).isEqualTo(1.0);
+			assertThat(result.numericRange()).isEqualTo(new GraphSchema.Range(-7L, 10.5));
+			assertThat(result.temporalRange()).isEqualTo(new GraphSchema.Range("2022-12-31", "2023-01-02"));
+			assertThat(result.stringLength()).isEqualTo(new GraphSchema.Lengths(4.5, 6));
+			assertThat(result.arrayLength()).isEqualTo(new GraphSchema.Lengths(2.5, 4));
+
+			var booleans = new ValueStatistics();
+			booleans.add(Values.booleanValue(true));
+			booleans.add(Values.booleanValue(true));
+			assertThat(booleans.toStatistics(2)).isEqualTo(new GraphSchema.Statistics(1, 0.5, null, null, null, null));
+
+			// A date and a datetime don't form a range, neither when added nor when merged
+			var mixed = new ValueStatistics();
+			mixed.add(Values.of(LocalDate.of(2023, 1, 2)));
+			mixed.add(Values.of(LocalDateTime.of(2022, 12, 31, 12, 0)));
+			assertThat(mixed.toStatistics(2).temporalRange()).isNull();
+			var dates = new ValueStatistics();
+			dates.add(Values.of(LocalDate.of(2023, 1, 2)));
+			var dateTimes = new ValueStatistics();
+			dateTimes.add(Values.of(LocalDateTime.of(2022, 12, 31, 12, 0)));
+			assertThat(dateTimes.toStatistics(1).temporalRange()).isEqualTo(new GraphSchema.Range("2022-12-31T12:00:00", "2022-12-31T12:00:00"));
+			assertThat(dates.merge(dateTimes).toStatistics(2).temporalRange()).isNull();
+		}
+
+		@Test
+		void shouldScanRelationshipsOncePerType() throws InvocationTargetException, IllegalAccessException {
+
+			var getRelationshipScanQuery = ReflectionUtils.getRequiredMethod(GraphSchema.Introspector.class, "getRelationshipScanQuery", String.class);
+			getRelationshipScanQuery.setAccessible(true);
+			var query = getRelationshipScanQuery.invoke(null, "A_TYPE");
 			assertThat(query).isEqualTo("""
-				CALL db.schema.relTypeProperties() YIELD relType, propertyName, propertyTypes, mandatory
-				WITH substring(relType, 2, size(relType)-3) AS relType, propertyName, propertyTypes, mandatory
-				CALL {
-					WITH relType, propertyName
-					MATCH (n)-[r]->(m) WHERE type(r) = relType AND (r[propertyName] IS NOT NULL OR propertyName IS NULL)
-					WITH n, r, m
-					LIMIT 100
-					WITH DISTINCT labels(n) AS from, labels(m) AS to
-					RETURN from, to
-				}
-				RETURN DISTINCT from, to, relType, propertyName, propertyTypes, mandatory
-				ORDER BY relType ASC
+				MATCH (n)-[r:`A_TYPE`]->(m)
+				RETURN labels(n) AS from, labels(m) AS to, keys(r) AS keys
 				""");
+			// Rendered the same way on each call, so that Neo4j's query cache hits
+			assertThat(getRelationshipScanQuery.invoke(null, "A_TYPE")).isEqualTo(query);
 		}
 
 		@Test
-		void sampleCanBeDisabled() throws InvocationTargetException, IllegalAccessException {
+		void relationshipScanShouldQuoteTypes() throws InvocationTargetException, IllegalAccessException {
 
-			var getRelationshipPropertiesQuery = ReflectionUtils.getRequiredMethod(GraphSchema.Introspector.class, "getRelationshipPropertiesQuery", Introspect.Config.class);
-			getRelationshipPropertiesQuery.setAccessible(true);
-			var query = getRelationshipPropertiesQuery.invoke(null, new Introspect.Config(Map.of("sampleOnly", false)));
+			var getRelationshipScanQuery = ReflectionUtils.getRequiredMethod(GraphSchema.Introspector.class, "getRelationshipScanQuery", String.class);
+			getRelationshipScanQuery.setAccessible(true);
+			var query = getRelationshipScanQuery.invoke(null, "`HAT DEN");
 			assertThat(query).isEqualTo("""
-				CALL db.schema.relTypeProperties() YIELD relType, propertyName, propertyTypes, mandatory
-				WITH substring(relType, 2, size(relType)-3) AS relType, propertyName, propertyTypes, mandatory
-				CALL {
-					WITH relType, propertyName
-					MATCH (n)-[r]->(m) WHERE type(r) = relType AND (r[propertyName] IS NOT NULL OR propertyName IS NULL)
-					WITH n, r, m
-					// LIMIT
-					WITH DISTINCT labels(n) AS from, labels(m) AS to
-					RETURN from, to
-				}
-				RETURN DISTINCT from, to, relType, propertyName, propertyTypes, mandatory
-				ORDER BY relType ASC
+				MATCH (n)-[r:```HAT DEN`]->(m)
+				RETURN labels(n) AS from, labels(m) AS to, keys(r) AS keys
 				""");
 		}
 	}
@@ -19,19 +19,34 @@
 package org.neo4j.graph_schema.introspector;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
 
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.neo4j.driver.GraphDatabase;
+import org.neo4j.graphdb.QueryExecutionException;
+import org.neo4j.graphdb.TransactionTerminatedException;
 import org.neo4j.harness.Neo4j;
 import org.neo4j.harness.Neo4jBuilders;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 class IntrospectTest {
@@ -329,4 +344,301 @@ class IntrospectTest {
 			assertThat(result).isEqualTo(expected);
 		}
 	}
+
+	@Test
+	void kernelEngineShouldYieldTheSameSchema() {
+
+		try (
+			var driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
+			var session = driver.session()
+		) {
+
+			var query = "CALL experimental.introspect.asJson($params) YIELD value RETURN value AS result";
+			var expected = session.run(query, Map.of("params", Map.of())).single().get("result").asString();
+			var result = session.run(query, Map.of("params", Map.of("engine", "kernel"))).single().get("result").asString();
+			assertThat(result).isEqualTo(expected);
+		}
+	}
+
+	@Test
+	void parallelIntrospectionShouldYieldTheSameSchema() {
+
+		try (
+			var driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
+			var session = driver.session()
+		) {
+
+			var query = "CALL experimental.introspect.asJson($params) YIELD value RETURN value AS result";
+			for (var engine : new String[] {"cypher", "kernel"}) {
+				var expected = session.run(query, Map.of("params", Map.of("engine", engine))).single().get("result").asString();
+				var result = session.run(query, Map.of("params", Map.of("engine", engine, "parallelism", 4))).single().get("result").asString();
+				assertThat(result).isEqualTo(expected);
+			}
+		}
+	}
+
+	@Test
+	void workersShouldBeBorrowedFromASharedPool() {
+
+		try (
+			var driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
+			var session = driver.session()
+		) {
+
+			var query = "CALL experimental.introspect.asJson($params) YIELD value RETURN value AS result";
+			var expected = session.run(query, Map.of("params", Map.of("engine", "kernel"))).single().get("result").asString();
+			for (int i = 0; i < 3; ++i) {
+				var result = session.run(query, Map.of("params", Map.of("engine", "kernel", "parallelism", 64))).single().get("result").asString();
+				assertThat(result).isEqualTo(expected);
+			}
+			var workerThreads = Thread.getAllStackTraces().keySet().stream()
+				.filter(thread -> thread.isAlive() && thread.getName().startsWith("graph-schema-introspector-worker-"))
+				.count();
+			assertThat(workerThreads).isLessThanOrEqualTo(Runtime.getRuntime().availableProcessors());
+		}
+	}
+
+	@Test
+	void concurrentPhasesShouldShareGeneratedIds() throws IOException {
+
+		try (
+			var driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
+			var session = driver.session()
+		) {
+
+			var query = "CALL experimental.introspect.asJson($params) YIELD value RETURN value AS result";
+			var objectMapper = new ObjectMapper();
+			for (var engine : new String[] {"cypher", "kernel"}) {
+				var schema = objectMapper.readTree(session.run(query, Map.of("params", Map.of("engine", engine, "parallelism", 4, "useConstantIds", false))).single().get("result").asString());
+				var nodeObjectTypeIds = schema.at("/graphSchemaRepresentation/graphSchema/nodeObjectTypes").findValuesAsText("$id");
+				var relationshipObjectTypes = schema.at("/graphSchemaRepresentation/graphSchema/relationshipObjectTypes");
+				assertThat(relationshipObjectTypes).isNotEmpty();
+				for (var relationshipObjectType : relationshipObjectTypes) {
+					assertThat(nodeObjectTypeIds).contains(relationshipObjectType.at("/from/$ref").asText().substring(1), relationshipObjectType.at("/to/$ref").asText().substring(1));
+				}
+			}
+		}
+	}
+
+	@Test
+	void filtersShouldScopeIntrospection() throws IOException {
+
+		try (
+			var driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
+			var session = driver.session()
+		) {
+
+			var query = "CALL experimental.introspect.asJson($params) YIELD value RETURN value AS result";
+			var objectMapper = new ObjectMapper();
+			for (var sampleOnly : new boolean[] {true, false}) {
+				var params = Map.<String, Object>of("sampleOnly", sampleOnly, "includeLabels", List.of("L*", "Unrelated"), "excludeLabels", "L3", "includeTypes", "RELATED_?O");
+				var expected = session.run(query, Map.of("params", params)).single().get("result").asString();
+
+				var schema = objectMapper.readTree(expected).at("/graphSchemaRepresentation/graphSchema");
+				assertThat(schema.get("nodeLabels").findValuesAsText("token")).containsExactlyInAnyOrder("L1", "L2", "`L ``2`", "Unrelated");
+				assertThat(schema.get("relationshipTypes").findValuesAsText("token")).containsExactly("RELATED_TO");
+				assertThat(schema.get("nodeObjectTypes").findValuesAsText("$id")).containsExactlyInAnyOrder("n:L `2:L1", "n:L1:L2", "n:L2", "n:Unrelated");
+				assertThat(schema.get("relationshipObjectTypes").findValuesAsText("$id")).hasSize(2);
+				assertThat(schema.get("relationshipObjectTypes").findValues("to")).map(to -> to.get("$ref").asText()).containsExactlyInAnyOrder("#n:L2", "#n:Unrelated");
+
+				var withKernel = new HashMap<>(params);
+				withKernel.put("engine", "kernel");
+				assertThat(session.run(query, Map.of("params", withKernel)).single().get("result").asString()).isEqualTo(expected);
+
+				// Books are out of scope, so that there is no node object type for the end of the reviews
+				for (var engine : new String[] {"cypher", "kernel"}) {
+					var persons = objectMapper.readTree(session.run(query, Map.of("params", Map.of("sampleOnly", sampleOnly, "engine", engine, "includeLabels", "Person"))).single().get("result").asString())
+						.at("/graphSchemaRepresentation/graphSchema");
+					assertThat(persons.get("nodeObjectTypes").findValuesAsText("$id")).containsExactly("n:Person");
+					assertThat(persons.get("relationshipObjectTypes")).isEmpty();
+				}
+			}
+		}
+	}
+
+	@Test
+	void neighborhoodShouldBePrunedToTheHopsAroundALabel() throws IOException {
+
+		try (
+			var driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
+			var session = driver.session()
+		) {
+
+			var query = "CALL experimental.introspect.neighborhood($label, $params) YIELD value RETURN value AS result";
+			var objectMapper = new ObjectMapper();
+			for (var sampleOnly : new boolean[] {true, false}) {
+				var expected = session.run(query, Map.of("label", "L3", "params", Map.of("sampleOnly", sampleOnly))).single().get("result").asString();
+				var schema = objectMapper.readTree(expected).at("/graphSchemaRepresentation/graphSchema");
+				assertThat(schema.get("nodeObjectTypes").findValuesAsText("$id")).containsExactlyInAnyOrder("n:L `2:L1", "n:L2:L3");
+				assertThat(schema.get("relationshipObjectTypes").findValues("to")).map(to -> to.get("$ref").asText()).containsExactly("#n:L2:L3");
+				assertThat(schema.get("relationshipTypes").findValuesAsText("token")).containsExactly("RELATED_TO");
+				assertThat(session.run(query, Map.of("label", "L3", "params", Map.of("sampleOnly", sampleOnly, "engine", "kernel"))).single().get("result").asString()).isEqualTo(expected);
+
+				var samples = session.run("CALL experimental.introspect.neighborhood($label, $params) YIELD samples RETURN samples", Map.of("label", "L3", "params", Map.of("sampleOnly", sampleOnly)))
+					.single().get("samples");
+				assertThat(samples.get("nodeLabels").keys()).isSubsetOf(schema.get("nodeLabels").findValuesAsText("token"));
+				assertThat(samples.get("relationshipTypes").keys()).isSubsetOf(schema.get("relationshipTypes").findValuesAsText("token"));
+			}
+
+			// Options of the kernel engine are accepted without asking for that engine, as it is always used
+			var kernelOnly = Map.<String, Object>of("samplingStrategy", "randomIds", "useCountStore", true, "maxRelationshipsPerNode", 10, "seed", 42);
+			var withKernelOptions = objectMapper.readTree(session.run(query, Map.of("label", "L3", "params", kernelOnly)).single().get("result").asString())
+				.at("/graphSchemaRepresentation/graphSchema");
+			assertThat(withKernelOptions.get("nodeObjectTypes").findValuesAsText("$id")).containsExactlyInAnyOrder("n:L `2:L1", "n:L2:L3");
+
+			var book = objectMapper.readTree(session.run(query, Map.of("label", "Book", "params", Map.of())).single().get("result").asString()).at("/graphSchemaRepresentation/graphSchema");
+			assertThat(book.get("nodeObjectTypes").findValuesAsText("$id")).containsExactlyInAnyOrder("n:Book", "n:Person");
+			assertThat(book.get("nodeLabels").findValuesAsText("token")).containsExactlyInAnyOrder("Book", "Person");
+
+			var center = objectMapper.readTree(session.run(query, Map.of("label", "Book", "params", Map.of("depth", 0))).single().get("result").asString()).at("/graphSchemaRepresentation/graphSchema");
+			assertThat(center.get("nodeObjectTypes").findValuesAsText("$id")).containsExactly("n:Book");
+			assertThat(center.get("relationshipObjectTypes")).isEmpty();
+
+			var unknown = objectMapper.readTree(session.run(query, Map.of("label", "Unknown", "params", Map.of())).single().get("result").asString()).at("/graphSchemaRepresentation/graphSchema");
+			assertThat(unknown.get("nodeObjectTypes")).isEmpty();
+		}
+	}
+
+	@Test
+	void statisticsShouldEstimateDistinctValues() throws IOException {
+
+		try (
+			var driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
+			var session = driver.session()
+		) {
+
+			var query = "CALL experimental.introspect.asJson($params) YIELD value RETURN value AS result";
+			var objectMapper = new ObjectMapper();
+			for (var sampleOnly : new boolean[] {true, false}) {
+				var params = Map.<String, Object>of("sampleOnly", sampleOnly, "statistics", true);
+				var expected = session.run(query, Map.of("params", params)).single().get("result").asString();
+
+				var schema = objectMapper.readTree(expected).at("/graphSchemaRepresentation/graphSchema");
+				JsonNode idx = null;
+				for (var nodeObjectType : schema.get("nodeObjectTypes")) {
+					if (nodeObjectType.get("$id").asText().equals("n:SomeNode")) {
+						idx = nodeObjectType.at("/properties/0");
+					}
+				}
+				assertThat(idx).isNotNull();
+				assertThat(idx.get("token").asText()).isEqualTo("idx");
+				assertThat(idx.at("/statistics/distinctValues").asLong()).isEqualTo(5L);
+				assertThat(idx.at("/statistics/uniqueness").asDouble()).isEqualTo(1.0);
+				assertThat(idx.at("/statistics/numericRange/min").asLong()).isEqualTo(1L);
+				assertThat(idx.at("/statistics/numericRange/max").asLong()).isEqualTo(5L);
+				assertThat(idx.at("/statistics").has("stringLength")).isFalse();
+				assertThat(schema.get("relationshipObjectTypes").findValues("temporalRange")).isNotEmpty();
+
+				var withKernel = new HashMap<>(params);
+				withKernel.put("engine", "kernel");
+				assertThat(session.run(query, Map.of("params", withKernel)).single().get("result").asString()).isEqualTo(expected);
+			}
+
+			var withoutStatistics = session.run(query, Map.of("params", Map.of())).single().get("result").asString();
+			assertThat(objectMapper.readTree(withoutStatistics).findValues("statistics")).isEmpty();
+		}
+	}
+
+	@Test
+	void countStoreShouldYieldTheSameSchema() {
+
+		try (
+			var driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
+			var session = driver.session()
+		) {
+
+			var query = "CALL experimental.introspect.asJson($params) YIELD value RETURN value AS result";
+			var expected = session.run(query, Map.of("params", Map.of())).single().get("result").asString();
+			var result = session.run(query, Map.of("params", Map.of("engine", "kernel", "useCountStore", true))).single().get("result").asString();
+			assertThat(result).isEqualTo(expected);
+		}
+	}
+
+	@Test
+	void parallelismShouldBeCappedAtTheAvailableProcessors() {
+
+		var databaseService = embeddedDatabaseServer.defaultDatabaseService();
+		try (var tx = databaseService.beginTx()) {
+			var availableProcessors = Runtime.getRuntime().availableProcessors();
+			assertThat(Workers.of(databaseService, tx, 1).parallelism()).isEqualTo(1);
+			assertThat(Workers.of(databaseService, tx, availableProcessors).parallelism()).isEqualTo(availableProcessors);
+			assertThat(Workers.of(databaseService, tx, availableProcessors + 64).parallelism()).isEqualTo(availableProcessors);
+		}
+	}
+
+	@Test
+	void checkpointsShouldDetectTermination() {
+
+		var databaseService = embeddedDatabaseServer.defaultDatabaseService();
+		try (var tx = databaseService.beginTx()) {
+			var introspector = new GraphSchema.Introspector(tx, Workers.of(databaseService, tx, 1), new Introspect.Config(Map.of()));
+			assertThat(introspector.shouldStop()).isFalse();
+			tx.terminate();
+			assertThatExceptionOfType(TransactionTerminatedException.class).isThrownBy(introspector::shouldStop);
+		}
+	}
+
+	@Test
+	void terminatedTransactionsShouldCancelIntrospection() throws Exception {
+
+		var terminator = Executors.newSingleThreadExecutor();
+		try (
+			var database = Neo4jBuilders.newInProcessBuilder()
+				.withDisabledServer()
+				// language=cypher
+				.withFixture("UNWIND range(1, 1000) AS i CREATE (:Source {i: i})-[:TARGETS {i: i}]->(:Target {i: i})")
+				.withProcedure(Introspect.class)
+				.build()
+		) {
+			var databaseService = database.defaultDatabaseService();
+			for (var engine : new String[] {"cypher", "kernel"}) {
+				for (var parallelism : new int[] {1, 4}) {
+					var config = new Introspect.Config(Map.of("engine", engine, "parallelism", parallelism, "sampleOnly", false));
+
+					// The clock of the deadline is read at every checkpoint, that is for every node or relationship looked at
+					var checkpoints = new AtomicInteger();
+					// Procedures run within a statement, which provides the execution contexts of the workers
+					try (var tx = databaseService.beginTx(); var ignored = ((InternalTransaction) tx).kernelTransaction().acquireStatement()) {
+						GraphSchema.build(databaseService, tx, config, config.labelFilter(), Deadline.of(Long.MAX_VALUE / 1_000_000, () -> checkpoints.incrementAndGet()));
+					}
+					var checkpointsOfAFullRun = checkpoints.get();
+					assertThat(checkpointsOfAFullRun).isGreaterThan(1000);
+
+					// Terminates the transaction from another thread once the introspection is under way, holding all
+					// threads of the introspection at their checkpoint until then
+					var reached = new CountDownLatch(1);
+					var terminated = new CountDownLatch(1);
+					var trigger = 100;
+					checkpoints.set(0);
+					LongSupplier clock = () -> {
+						if (checkpoints.incrementAndGet() >= trigger) {
+							reached.countDown();
+							try {
+								terminated.await();
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+							}
+						}
+						return 0;
+					};
+					try (var tx = databaseService.beginTx(); var ignored = ((InternalTransaction) tx).kernelTransaction().acquireStatement()) {
+						terminator.submit(() -> {
+							reached.await();
+							tx.terminate();
+							terminated.countDown();
+							return null;
+						});
+						// Workers of the Cypher engine that are running a query at that moment see the termination wrapped
+						assertThatThrownBy(() -> GraphSchema.build(databaseService, tx, config, config.labelFilter(), Deadline.of(Long.MAX_VALUE / 1_000_000, clock)))
+							.isInstanceOfAny(TransactionTerminatedException.class, QueryExecutionException.class)
+							.hasMessageContaining("terminated");
+					}
+					// Each thread stops at its next checkpoint at the latest
+					assertThat(checkpoints.get()).isLessThan(trigger + 2 * (parallelism + 1));
+				}
+			}
+		} finally {
+			terminator.shutdownNow();
+		}
+	}
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2023 "Neo4j,"
+ * Neo4j Sweden AB [https://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.graph_schema.introspector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+import org.neo4j.graph_schema.introspector.GraphSchema.Introspector.Endpoints;
+
+class SamplingStrategyTest {
+
+	private static final Endpoints A_TO_B = new Endpoints(":`A`", ":`B`");
+	private static final Endpoints A_TO_C = new Endpoints(":`A`", ":`C`");
+	private static final Endpoints C_TO_B = new Endpoints(":`C`", ":`B`");
+
+	@Test
+	void shouldResolveBuiltinStrategies() {
+
+		assertThat(SamplingStrategy.of("firstN")).isSameAs(SamplingStrategy.FIRST_N);
+		assertThat(SamplingStrategy.of("RESERVOIR")).isSameAs(SamplingStrategy.RESERVOIR);
+		assertThat(SamplingStrategy.of("stratified")).isSameAs(SamplingStrategy.STRATIFIED);
+		assertThatIllegalArgumentException().isThrownBy(() -> SamplingStrategy.of("whatever"))
+			.withMessage("Unsupported sampling strategy whatever");
+	}
+
+	@Test
+	void firstNShouldCompleteAfterN() {
+
+		var sampler = SamplingStrategy.FIRST_N.newSampler(2);
+		offer(sampler, A_TO_B, A_TO_B);
+		assertThat(sampler.isComplete()).isTrue();
+		assertThat(sampler.select()).isFalse();
+		assertThat(sampler.getEndpoints()).containsExactly(A_TO_B);
+	}
+
+	@Test
+	void reservoirShouldBeBoundedAndNeverComplete() {
+
+		var sampler = SamplingStrategy.RESERVOIR.newSampler(2, new SplittableRandom(42));
+		for (int i = 0; i < 1_000; ++i) {
+			offer(sampler, new Endpoints(":`A`", ":`B" + i + "`"));
+			assertThat(sampler.isComplete()).isFalse();
+			assertThat(sampler.getEndpoints()).hasSize(Math.min(i + 1, 2));
+		}
+	}
+
+	@Test
+	void reservoirShouldSampleUniformly() {
+
+		// Each of 10 relationships must end up in a sample of 2 in a fifth of all trials, the last ones replacing
+		// earlier ones just as often as the first ones are kept
+		var relationships = new Endpoints[10];
+		for (int i = 0; i < relationships.length; ++i) {
+			relationships[i] = new Endpoints(":`A`", ":`B" + i + "`");
+		}
+		var trials = 10_000;
+		var counts = new HashMap<Endpoints, Integer>();
+		for (int trial = 0; trial < trials; ++trial) {
+			var sampler = SamplingStrategy.RESERVOIR.newSampler(2, new SplittableRandom(trial));
+			offer(sampler, relationships);
+			assertThat(sampler.getEndpoints()).hasSize(2);
+			sampler.getEndpoints().forEach(endpoints -> counts.merge(endpoints, 1, Integer::sum));
+		}
+		// The standard deviation of each count is 40
+		assertThat(counts).hasSize(relationships.length);
+		assertThat(counts.values()).allSatisfy(count -> assertThat(count).isBetween(trials / 5 - 200, trials / 5 + 200));
+	}
+
+	@Test
+	void seededReservoirsShouldSampleTheSame() {
+
+		var samples = new ArrayList<List<Endpoints>>();
+		for (int i = 0; i < 2; ++i) {
+			var sampler = SamplingStrategy.RESERVOIR.newSampler(3, new SplittableRandom(42));
+			for (int j = 0; j < 100; ++j) {
+				offer(sampler, new Endpoints(":`A`", ":`B" + j + "`"));
+			}
+			samples.add(List.copyOf(sampler.getEndpoints()));
+		}
+		assertThat(samples.get(0)).hasSize(3).isEqualTo(samples.get(1));
+	}
+
+	@Test
+	void stratifiedShouldSampleEachStartOnItsOwn() {
+
+		var sampler = SamplingStrategy.STRATIFIED.newSampler(2);
+		offer(sampler, A_TO_B, A_TO_B, A_TO_C, C_TO_B);
+		assertThat(sampler.isComplete()).isFalse();
+		assertThat(sampler.getEndpoints()).containsExactly(A_TO_B, C_TO_B);
+	}
+
+	private static void offer(SamplingStrategy.Sampler sampler, Endpoints... relationships) {
+		for (var endpoints : relationships) {
+			if (sampler.select()) {
+				sampler.add(endpoints);
+			}
+		}
+	}
+}
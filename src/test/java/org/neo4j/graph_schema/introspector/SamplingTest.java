@@ -19,15 +19,25 @@
 package org.neo4j.graph_schema.introspector;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.neo4j.driver.GraphDatabase;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.exceptions.Neo4jException;
 import org.neo4j.harness.Neo4j;
 import org.neo4j.harness.Neo4jBuilders;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 class SamplingTest {
 
@@ -234,4 +244,343 @@ class SamplingTest {
 			assertThat(result).isEqualTo(expected);
 		}
 	}
+
+	@Test
+	void kernelEngineShouldSampleTheSame() {
+
+		try (
+			var driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
+			var session = driver.session()
+		) {
+
+			var query = "CALL experimental.introspect.asJson($params) YIELD value RETURN value AS result";
+			for (var sampleOnly : new boolean[] {true, false}) {
+				var expected = session.run(query, Map.of("params", Map.of("sampleOnly", sampleOnly))).single().get("result").asString();
+				var result = session.run(query, Map.of("params", Map.of("sampleOnly", sampleOnly, "engine", "kernel"))).single().get("result").asString();
+				assertThat(result).isEqualTo(expected);
+			}
+		}
+	}
+
+	@Test
+	void partitionedNodeScanShouldYieldTheSameSchema() {
+
+		try (
+			var driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
+			var session = driver.session()
+		) {
+
+			var query = "CALL experimental.introspect.asJson($params) YIELD value RETURN value AS result";
+			var expected = session.run(query, Map.of("params", Map.of())).single().get("result").asString();
+			var result = session.run(query, Map.of("params", Map.of("engine", "kernel", "parallelism", 4))).single().get("result").asString();
+			assertThat(result).isEqualTo(expected);
+
+			// Without a label lookup index, the node store itself is partitioned
+			var labelIndex = session.run("SHOW LOOKUP INDEXES YIELD name, entityType WHERE entityType = 'NODE' RETURN name").single().get("name").asString();
+			session.run("DROP INDEX " + labelIndex).consume();
+			try {
+				result = session.run(query, Map.of("params", Map.of("engine", "kernel", "parallelism", 4))).single().get("result").asString();
+				assertThat(result).isEqualTo(expected);
+			} finally {
+				session.run("CREATE LOOKUP INDEX " + labelIndex + " FOR (n) ON EACH labels(n)").consume();
+				session.run("CALL db.awaitIndexes()").consume();
+			}
+		}
+	}
+
+	@Test
+	void sampleSizeAndStrategyShouldBeConfigurable() {
+
+		try (
+			var driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
+			var session = driver.session()
+		) {
+
+			var query = "CALL experimental.introspect.asJson($params) YIELD value RETURN value AS result";
+			for (var engine : new String[] {"cypher", "kernel"}) {
+				var sampled = session.run(query, Map.of("params", Map.of("engine", engine))).single().get("result").asString();
+				var all = session.run(query, Map.of("params", Map.of("engine", engine, "sampleOnly", false))).single().get("result").asString();
+				assertThat(sampled).isNotEqualTo(all);
+
+				// The only relationship between A2 and B2 is the last one
+				var sampleSize = GraphSchema.Introspector.DEFAULT_SAMPLE_SIZE * 10 + 1;
+				var result = session.run(query, Map.of("params", Map.of("engine", engine, "sampleSize", sampleSize))).single().get("result").asString();
+				assertThat(result).isEqualTo(all);
+
+				// Each start node type is sampled on its own
+				result = session.run(query, Map.of("params", Map.of("engine", engine, "samplingStrategy", "stratified"))).single().get("result").asString();
+				assertThat(result).isEqualTo(all);
+
+				// Seeded samples are the same on every call. With the first seed, the reservoir happens to take the only
+				// relationship between A2 and B2, which is never among the first relationships, with the second it doesn't
+				var seeds = engine.equals("cypher") ? new int[] {4, 1} : new int[] {37, 1};
+				var reservoir = Map.<String, Object>of("engine", engine, "samplingStrategy", "reservoir", "seed", seeds[0]);
+				result = session.run(query, Map.of("params", reservoir)).single().get("result").asString();
+				assertThat(result).isEqualTo(all);
+				assertThat(session.run(query, Map.of("params", reservoir)).single().get("result").asString()).isEqualTo(result);
+				result = session.run(query, Map.of("params", Map.of("engine", engine, "samplingStrategy", "reservoir", "seed", seeds[1]))).single().get("result").asString();
+				assertThat(result).isEqualTo(sampled);
+			}
+
+			// Random ids can only be probed with the kernel engine, the same seeds probe the same ids
+			var sampled = session.run(query, Map.of("params", Map.of("engine", "kernel"))).single().get("result").asString();
+			var all = session.run(query, Map.of("params", Map.of("engine", "kernel", "sampleOnly", false))).single().get("result").asString();
+			var randomIds = Map.<String, Object>of("engine", "kernel", "samplingStrategy", "randomIds", "seed", 1);
+			var result = session.run(query, Map.of("params", randomIds)).single().get("result").asString();
+			assertThat(result).isEqualTo(all);
+			assertThat(session.run(query, Map.of("params", randomIds)).single().get("result").asString()).isEqualTo(result);
+			result = session.run(query, Map.of("params", Map.of("engine", "kernel", "samplingStrategy", "randomIds", "seed", 3))).single().get("result").asString();
+			assertThat(result).isEqualTo(sampled);
+		}
+	}
+
+	@Test
+	void nodesShouldBeSampled() throws Exception {
+
+		try (
+			var driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
+			var session = driver.session()
+		) {
+
+			// Only the last node has a property, which is out of reach when sampling
+			session.run("UNWIND range(1, $sampleSize) AS i CREATE (:Sampled)", Map.of("sampleSize", GraphSchema.Introspector.DEFAULT_SAMPLE_SIZE)).consume();
+			session.run("CREATE (:Sampled {late: true})").consume();
+			try {
+				var query = "CALL experimental.introspect.asJson($params) YIELD value RETURN value AS result";
+				var objectMapper = new ObjectMapper();
+				for (var engine : new String[] {"cypher", "kernel"}) {
+					var sampled = objectMapper.readTree(session.run(query, Map.of("params", Map.of("engine", engine, "sampleNodes", true))).single().get("result").asString());
+					assertThat(getProperties(sampled, "n:Sampled")).isEmpty();
+
+					// Nodes are not sampled by default, even if relationships are
+					for (var sampleOnly : new boolean[] {true, false}) {
+						var all = objectMapper.readTree(session.run(query, Map.of("params", Map.of("engine", engine, "sampleOnly", sampleOnly))).single().get("result").asString());
+						assertThat(getProperties(all, "n:Sampled"))
+							.singleElement()
+							.satisfies(property -> {
+								assertThat(property.get("token").asText()).isEqualTo("late");
+								assertThat(property.get("nullable").asBoolean()).isTrue();
+							});
+					}
+				}
+			} finally {
+				session.run("MATCH (n:Sampled) DELETE n").consume();
+			}
+		}
+	}
+
+	private static List<JsonNode> getProperties(JsonNode schema, String nodeObjectTypeId) {
+
+		for (var nodeObjectType : schema.get("graphSchemaRepresentation").get("graphSchema").get("nodeObjectTypes")) {
+			if (nodeObjectTypeId.equals(nodeObjectType.get("$id").asText())) {
+				var properties = new ArrayList<JsonNode>();
+				nodeObjectType.get("properties").forEach(properties::add);
+				return properties;
+			}
+		}
+		throw new IllegalArgumentException("No such node object type " + nodeObjectTypeId);
+	}
+
+	@Test
+	void kernelEngineShouldResolveEndpointsWithManyLabels() {
+
+		try (
+			var driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
+			var session = driver.session()
+		) {
+
+			// Label ids beyond 63 don't fit into the bitset of the node type dictionary
+			var manyLabels = new StringBuilder();
+			for (int i = 0; i < 70; ++i) {
+				manyLabels.append(":Many").append(i);
+			}
+			session.run("CREATE (m%s)-[:HAS_MANY_LABELS]->(:Many0:Many69)-[:HAS_MANY_LABELS]->(m)".formatted(manyLabels)).consume();
+			try {
+				var query = "CALL experimental.introspect.asJson($params) YIELD value RETURN value AS result";
+				var expected = session.run(query, Map.of("params", Map.of())).single().get("result").asString();
+				var result = session.run(query, Map.of("params", Map.of("engine", "kernel"))).single().get("result").asString();
+				assertThat(result).isEqualTo(expected).contains("Many69");
+			} finally {
+				session.run("MATCH (n:Many0) DETACH DELETE n").consume();
+			}
+		}
+	}
+
+	@Test
+	void samplingShouldStopOnceConverged() {
+
+		try (
+			var driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
+			var session = driver.session()
+		) {
+
+			session.run("UNWIND range(1, 100) AS i CREATE (:Converging {name: 'n' + i})").consume();
+			session.run("MATCH (n:Converging) WITH collect(n) AS nodes UNWIND range(0, 48) AS i WITH nodes[i] AS s, nodes[i + 1] AS t CREATE (s)-[:CONVERGES]->(t)").consume();
+			try {
+				var query = "CALL experimental.introspect.asJson($params) YIELD value, samples RETURN value, samples";
+				for (var engine : new String[] {"cypher", "kernel"}) {
+					var all = session.run(query, Map.of("params", Map.of("engine", engine, "sampleNodes", true))).single();
+					assertThat(all.get("samples").get("nodeLabels").get("Converging").asLong()).isEqualTo(100L);
+					assertThat(all.get("samples").get("relationshipTypes").get("CONVERGES").asLong()).isEqualTo(49L);
+
+					var converged = session.run(query, Map.of("params", Map.of("engine", engine, "sampleNodes", true, "convergenceWindow", 5))).single();
+					assertThat(converged.get("samples").get("nodeLabels").get("Converging").asLong()).isEqualTo(6L);
+					assertThat(converged.get("samples").get("relationshipTypes").get("CONVERGES").asLong()).isEqualTo(6L);
+					assertThat(converged.get("value").asString()).isEqualTo(all.get("value").asString());
+
+					var notSampled = session.run(query, Map.of("params", Map.of("engine", engine, "sampleOnly", false, "sampleNodes", true, "convergenceWindow", 5))).single();
+					assertThat(notSampled.get("samples").get("nodeLabels").asMap()).isEmpty();
+					assertThat(notSampled.get("samples").get("relationshipTypes").asMap()).isEmpty();
+				}
+			} finally {
+				session.run("MATCH (n:Converging) DETACH DELETE n").consume();
+			}
+		}
+	}
+
+	@Test
+	void hubsShouldNotTakeUpTheWholeSample() {
+
+		// A store of its own, as relationship ids freed by other tests are reused and would break the store order
+		try (
+			var database = Neo4jBuilders.newInProcessBuilder()
+				.withDisabledServer()
+				// language=cypher
+				.withFixture("""
+					CREATE (h:Hub) WITH h UNWIND range(1, 200) AS i CREATE (h)-[:FOLLOWS]->(:Fan)
+					""")
+				// language=cypher
+				.withFixture("""
+					CREATE (:Other)-[:FOLLOWS]->(:Star)
+					""")
+				.withProcedure(Introspect.class)
+				.build();
+			var driver = GraphDatabase.driver(database.boltURI());
+			var session = driver.session()
+		) {
+
+			// The relationships of the hub come first and exceed the sample size
+			var query = "CALL experimental.introspect.asJson($params) YIELD value, samples RETURN value, samples";
+			var sampled = session.run(query, Map.of("params", Map.of("engine", "kernel"))).single();
+			assertThat(sampled.get("value").asString()).doesNotContain("\"#n:Star\"");
+			assertThat(sampled.get("samples").get("relationshipTypes").get("FOLLOWS").asLong()).isEqualTo(201L);
+
+			var capped = session.run(query, Map.of("params", Map.of("engine", "kernel", "maxRelationshipsPerNode", 10))).single();
+			assertThat(capped.get("value").asString()).contains("\"#n:Star\"");
+			assertThat(capped.get("samples").get("relationshipTypes").get("FOLLOWS").asLong()).isEqualTo(11L);
+		}
+	}
+
+	@Test
+	void propertiesOfHubsBeyondTheCapShouldStillCount() throws Exception {
+
+		try (
+			var database = Neo4jBuilders.newInProcessBuilder()
+				.withDisabledServer()
+				// language=cypher
+				.withFixture("""
+					CREATE (h:Hub) WITH h UNWIND range(1, 20) AS i CREATE (h)-[:FOLLOWS {since: CASE WHEN i <= 5 THEN i END}]->(:Fan)
+					""")
+				.withProcedure(Introspect.class)
+				.build();
+			var driver = GraphDatabase.driver(database.boltURI());
+			var session = driver.session()
+		) {
+
+			// Only the relationships of the hub within the cap have the property
+			var query = "CALL experimental.introspect.asJson($params) YIELD value RETURN value";
+			var params = Map.of("engine", "kernel", "maxRelationshipsPerNode", 5);
+			var schema = new ObjectMapper().readTree(session.run(query, Map.of("params", params)).single().get("value").asString());
+			var properties = new ArrayList<JsonNode>();
+			schema.get("graphSchemaRepresentation").get("graphSchema").get("relationshipObjectTypes")
+				.forEach(relationshipObjectType -> relationshipObjectType.get("properties").forEach(properties::add));
+			assertThat(properties)
+				.singleElement()
+				.satisfies(property -> {
+					assertThat(property.get("token").asText()).isEqualTo("since");
+					assertThat(property.get("nullable").asBoolean()).isTrue();
+				});
+		}
+	}
+
+	@Test
+	void seededSamplingShouldBeReproducible() {
+
+		try (
+			var driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
+			var session = driver.session()
+		) {
+			var query = "CALL experimental.introspect.asJson($params) YIELD value RETURN value";
+			var parameters = List.<Map<String, Object>>of(
+				Map.of("samplingStrategy", "reservoir", "sampleSize", 2, "seed", 42),
+				Map.of("engine", "kernel", "samplingStrategy", "reservoir", "sampleSize", 2, "seed", 42, "parallelism", 4),
+				Map.of("engine", "kernel", "samplingStrategy", "randomIds", "sampleSize", 2, "seed", 4711)
+			);
+			for (var params : parameters) {
+				var first = session.run(query, Map.of("params", params)).single().get("value").asString();
+				for (int i = 0; i < 3; ++i) {
+					assertThat(session.run(query, Map.of("params", params)).single().get("value").asString()).isEqualTo(first);
+				}
+			}
+		}
+	}
+
+	@Test
+	void introspectionShouldStopWhenTheTimeBudgetIsUsedUp() {
+
+		try (
+			var driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
+			var session = driver.session()
+		) {
+
+			session.run("CREATE (s:Slow) WITH s UNWIND range(1, 10000) AS i CREATE (s)-[:SLOW {i: i}]->(s)").consume();
+			try {
+				for (var engine : new String[] {"cypher", "kernel"}) {
+					var query = "CALL experimental.introspect.asJson($params) YIELD value, complete, unexplored RETURN value, complete, unexplored";
+					var partial = session.run(query, Map.of("params", Map.of("engine", engine, "sampleOnly", false, "timeBudgetMs", 1))).single();
+					assertThat(partial.get("complete").asBoolean()).isFalse();
+					assertThat(partial.get("unexplored").get("relationshipTypes").asList(Value::asString)).contains("SLOW");
+
+					var full = session.run(query, Map.of("params", Map.of("engine", engine, "sampleOnly", false, "timeBudgetMs", 600_000))).single();
+					assertThat(full.get("complete").asBoolean()).isTrue();
+					assertThat(full.get("unexplored").get("nodeLabels").asList()).isEmpty();
+					assertThat(full.get("unexplored").get("relationshipTypes").asList()).isEmpty();
+
+					var graph = session.run("CALL experimental.introspect.asGraph($params) YIELD complete RETURN complete", Map.of("params", Map.of("engine", engine))).single();
+					assertThat(graph.get("complete").asBoolean()).isTrue();
+				}
+			} finally {
+				session.run("MATCH (n:Slow) DETACH DELETE n").consume();
+			}
+		}
+	}
+
+	@Test
+	void introspectionShouldFailFastWhenRunningOutOfMemory() {
+
+		try (
+			var driver = GraphDatabase.driver(embeddedDatabaseServer.boltURI());
+			var session = driver.session()
+		) {
+
+			for (var engine : new String[] {"cypher", "kernel"}) {
+				var query = "CALL experimental.introspect.asJson($params) YIELD value RETURN value";
+				assertThatExceptionOfType(Neo4jException.class)
+					.isThrownBy(() -> session.run(query, Map.of("params", Map.of("engine", engine, "maxMemoryBytes", 1))).consume())
+					.withMessageContaining("maxMemoryBytes");
+
+				var value = session.run(query, Map.of("params", Map.of("engine", engine, "maxMemoryBytes", 100_000_000))).single().get("value").asString();
+				assertThat(value).contains("nodeObjectTypes");
+			}
+
+			// Workers scanning partitions fail independently and must all be done before their contexts are closed
+			for (int i = 0; i < 3; ++i) {
+				assertThatExceptionOfType(Neo4jException.class)
+					.isThrownBy(() -> session.run("CALL experimental.introspect.asJson($params) YIELD value RETURN value", Map.of("params", Map.of("engine", "kernel", "parallelism", 4, "maxMemoryBytes", 1))).consume())
+					.withMessageContaining("maxMemoryBytes");
+				// Neither the workers nor the concurrent relationship phase outlive the failed call
+				assertThat(session.run("SHOW TRANSACTIONS YIELD transactionId RETURN count(*) AS transactions").single().get("transactions").asLong()).isOne();
+			}
+		}
+	}
 }